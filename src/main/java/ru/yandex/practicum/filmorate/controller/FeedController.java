@@ -2,23 +2,51 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.service.FeedService;
 
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
-@RequestMapping("/users")
 @RequiredArgsConstructor
 public class FeedController {
 
     private final FeedService feedService;
 
-    @GetMapping("/{id}/feed")
-    public List<FeedEvent> getUserFeed(@PathVariable Integer id) {
-        log.info("GET /users/{}/feed - получение ленты событий пользователя", id);
-        return feedService.getUserFeed(id);
+    // Страница от новых к старым: для следующей передаётся before = eventId первого события текущей
+    @GetMapping("/users/{id}/feed")
+    public List<FeedEvent> getUserFeed(@PathVariable Integer id,
+                                       @RequestParam(required = false) Integer before,
+                                       @RequestParam(required = false) Integer limit,
+                                       @RequestParam(defaultValue = "false") boolean all) {
+        log.info("GET /users/{}/feed - получение ленты событий пользователя, before={}, limit={}, all={}",
+                id, before, limit, all);
+        return feedService.getUserFeed(id, before, limit, all);
     }
-}
\ No newline at end of file
+
+    // Поток новых событий (SSE); при событии resync клиент дочитывает пропущенное через /users/{id}/feed
+    @GetMapping(value = "/users/{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUserFeed(@PathVariable Integer id) {
+        log.info("GET /users/{}/feed/stream - подписка на ленту событий пользователя", id);
+        return feedService.streamUserFeed(id);
+    }
+
+    @GetMapping("/users/{id}/timeline")
+    public List<FeedEvent> getTimeline(@PathVariable Integer id,
+                                       @RequestParam(required = false) Integer limit) {
+        log.info("GET /users/{}/timeline - получение ленты активности друзей, limit={}", id, limit);
+        return feedService.getTimeline(id, limit);
+    }
+
+    // Разосланные из outbox события по типам и задержка их рассылки
+    @GetMapping("/feed/metrics")
+    public Map<String, Object> getMetrics() {
+        log.info("GET /feed/metrics - метрики ленты событий");
+        return feedService.getMetrics();
+    }
+}
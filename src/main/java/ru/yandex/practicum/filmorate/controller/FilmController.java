@@ -3,11 +3,17 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.View;
 import java.util.List;
 import java.util.Set;
 
@@ -17,10 +23,18 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final RecommendationService recommendationService;
+    private final StreamingJsonWriter streamingJsonWriter;
 
+    // Без limit отдаётся вся таблица, но потоком из курсора; ?after=<id>&limit=N — страница после фильма id.
+    // ?view=summary в списках фильмов — likeCount вместо полного списка id лайкнувших
     @GetMapping
-    public List<Film> findAll() {
-        return filmService.findAll();
+    public ResponseEntity<StreamingResponseBody> findAll(
+            @RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streamingJsonWriter.write(accept, filmService.streamFilms(after, limit, View.parse(view)));
     }
 
     @GetMapping("/{id}")
@@ -57,16 +71,31 @@ public class FilmController {
 
     @GetMapping("/search")
     public List<Film> searchFilms(@RequestParam(required = false) String query,
-                                  @RequestParam(required = false) String by) {
-        return filmService.searchFilms(query, by);
+                                  @RequestParam(required = false) String by,
+                                  @RequestParam(defaultValue = "false") boolean fuzzy,
+                                  @RequestParam(required = false) String view) {
+        return filmService.searchFilms(query, by, fuzzy, View.parse(view));
+    }
+
+    @GetMapping("/search/suggest")
+    public List<Suggestion> suggest(@RequestParam String prefix,
+                                    @RequestParam(defaultValue = "10") int limit) {
+        return filmService.suggest(prefix, limit);
     }
 
     @GetMapping("/popular")
     public List<Film> getPopularFilms(
             @RequestParam(defaultValue = "10") Integer count,
             @RequestParam(required = false) Integer genreId,
-            @RequestParam(required = false) Integer year) {
-        return filmService.getPopularFilms(count, genreId, year);
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) String view) {
+        return filmService.getPopularFilms(count, genreId, year, View.parse(view));
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilarFilms(@PathVariable Integer id,
+                                      @RequestParam(defaultValue = "10") int count) {
+        return recommendationService.getSimilarFilms(id, count);
     }
 
     @GetMapping("/{id}/genres")
@@ -88,8 +117,9 @@ public class FilmController {
     @GetMapping("/common")
     public List<Film> getCommonFilms(
             @RequestParam Integer userId,
-            @RequestParam Integer friendId) {
+            @RequestParam Integer friendId,
+            @RequestParam(required = false) String view) {
         log.info("GET /films/common?userId={}&friendId={} - получение общих фильмов", userId, friendId);
-        return filmService.getCommonFilms(userId, friendId);
+        return filmService.getCommonFilms(userId, friendId, View.parse(view));
     }
 }
\ No newline at end of file
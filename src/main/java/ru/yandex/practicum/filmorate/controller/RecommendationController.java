@@ -4,24 +4,31 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.RecommendationService;
 
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
-@RequestMapping("/users")
 @RequiredArgsConstructor
 public class RecommendationController {
 
     private final RecommendationService recommendationService;
 
-    @GetMapping("/{id}/recommendations")
-    public List<Film> getRecommendations(@PathVariable Integer id) {
-        log.info("GET /users/{}/recommendations - получение рекомендаций", id);
-        return recommendationService.getRecommendations(id);
+    @GetMapping("/users/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Integer id,
+                                         @RequestParam(defaultValue = "user") String mode) {
+        log.info("GET /users/{}/recommendations?mode={} - получение рекомендаций", id, mode);
+        return recommendationService.getRecommendations(id, mode);
+    }
+
+    @GetMapping("/recommendations/metrics")
+    public Map<String, Object> getMetrics() {
+        log.info("GET /recommendations/metrics - метрики рекомендаций");
+        return recommendationService.getMetrics();
     }
 }
\ No newline at end of file
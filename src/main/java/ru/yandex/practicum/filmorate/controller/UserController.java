@@ -3,10 +3,14 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.service.View;
 import java.util.List;
 
 @Slf4j
@@ -15,10 +19,17 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final StreamingJsonWriter streamingJsonWriter;
 
+    // Без limit отдаётся вся таблица, но потоком из курсора; ?after=<id>&limit=N — страница после пользователя id.
+    // ?view=summary в списках пользователей — friendCount вместо полного списка id друзей
     @GetMapping
-    public List<User> findAll() {
-        return userService.findAll();
+    public ResponseEntity<StreamingResponseBody> findAll(
+            @RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streamingJsonWriter.write(accept, userService.streamUsers(after, limit, View.parse(view)));
     }
 
     @GetMapping("/{id}")
@@ -54,12 +65,13 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getFriends(@PathVariable Integer id) {
-        return userService.getFriends(id);
+    public List<User> getFriends(@PathVariable Integer id, @RequestParam(required = false) String view) {
+        return userService.getFriends(id, View.parse(view));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriends(@PathVariable Integer id, @PathVariable Integer otherId) {
-        return userService.getCommonFriends(id, otherId);
+    public List<User> getCommonFriends(@PathVariable Integer id, @PathVariable Integer otherId,
+                                       @RequestParam(required = false) String view) {
+        return userService.getCommonFriends(id, otherId, View.parse(view));
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import jakarta.validation.constraints.*;
 import java.time.LocalDate;
@@ -24,6 +25,10 @@ public class Film {
 
     private MpaRating mpa;
     private Set<Genre> genres = new LinkedHashSet<>(); // Используем LinkedHashSet вместо HashSet
-    private Set<Integer> likes = new LinkedHashSet<>();
+    // В кратком представлении (view=summary) вместо списка лайков отдаётся их количество
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private IntSet likes = new IntSet();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer likeCount;
     private Set<Director> directors = new LinkedHashSet<>();
 }
\ No newline at end of file
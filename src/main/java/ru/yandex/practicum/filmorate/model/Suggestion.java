@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Suggestion {
+    private Type type;
+    private Integer id;
+    private String name;
+    private Integer weight;
+
+    public enum Type {
+        FILM,
+        DIRECTOR
+    }
+}
@@ -1,10 +1,9 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import jakarta.validation.constraints.*;
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 public class User {
@@ -23,6 +22,10 @@ public class User {
     @Past(message = "Дата рождения не может быть в будущем")
     private LocalDate birthday;
 
-    private Set<Integer> friends = new HashSet<>();
+    // В кратком представлении (view=summary) вместо списка друзей отдаётся их количество
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private IntSet friends = new IntSet();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer friendCount;
 }
 
@@ -8,6 +8,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmFeatureIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 
 import java.util.Collection;
 
@@ -16,6 +18,8 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final FilmSearchIndex searchIndex;
+    private final FilmFeatureIndex featureIndex;
 
     public Collection<Director> findAll() {
         return directorStorage.findAll();
@@ -32,11 +36,11 @@ public class DirectorService {
         if (director.getId() != null) {
             if (directorStorage.getById(director.getId()).isPresent()) {
                 log.info("Директор с ID {} уже существует, обновляем", director.getId());
-                return directorStorage.update(director);
+                return index(directorStorage.update(director));
             }
         }
 
-        return directorStorage.create(director);
+        return index(directorStorage.create(director));
     }
 
     public Director update(@Valid Director director) {
@@ -46,7 +50,7 @@ public class DirectorService {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Режиссёр не найден");
         }
 
-        return directorStorage.update(director);
+        return index(directorStorage.update(director));
     }
 
     public void delete(@Valid Integer id) {
@@ -54,5 +58,12 @@ public class DirectorService {
         if (!directorStorage.delete(id)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Режиссер с таким id отсутствует в базе");
         }
+        searchIndex.removeDirector(id);
+        featureIndex.removeDirector(id);
+    }
+
+    private Director index(Director director) {
+        searchIndex.indexDirector(director);
+        return director;
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.feed.FeedEventSubscriber;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики событий ленты по типу и операции и задержка от создания события до его рассылки из outbox.
+ * Подписчик FeedOutboxRelay: считает только события, уже зафиксированные вместе со своим действием.
+ */
+@Component
+public class FeedEventCounters implements FeedEventSubscriber {
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private final LatencyStats relayLag = new LatencyStats();
+    private final LongAccumulator lastEventId = new LongAccumulator(Long::max, 0);
+
+    @Override
+    public void onEvents(List<FeedEvent> events) {
+        long now = Instant.now().toEpochMilli();
+        for (FeedEvent event : events) {
+            counts.computeIfAbsent(event.getEventType() + "_" + event.getOperation(), key -> new LongAdder())
+                    .increment();
+            relayLag.record(Math.max(0, now - event.getTimestamp()) * 1_000_000);
+            lastEventId.accumulate(event.getEventId());
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> events = new TreeMap<>();
+        counts.forEach((key, count) -> events.put(key, count.sum()));
+        return Map.of("events", events, "relayLag", relayLag.snapshot(), "lastEventId", lastEventId.get());
+    }
+}
@@ -5,12 +5,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedTimelineCache;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -19,11 +23,54 @@ public class FeedService {
 
     private final FeedStorage feedStorage;
     private final UserStorage userStorage;
+    private final FeedEventCounters feedEventCounters;
+    private final FeedStreamHub feedStreamHub;
 
-    public List<FeedEvent> getUserFeed(Integer userId) {
+    static final int FEED_PAGE_SIZE = 100;
+    static final int MAX_FEED_PAGE_SIZE = 1000;
+
+    // По умолчанию — последние FEED_PAGE_SIZE событий; вся история только по явному all=true
+    public List<FeedEvent> getUserFeed(Integer userId, Integer before, Integer limit, boolean all) {
+        if (all && (before != null || limit != null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Параметр all нельзя сочетать с before и limit");
+        }
+        if (before != null && before <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр before должен быть положительным");
+        }
+        int size = limit != null ? limit : FEED_PAGE_SIZE;
+        if (size <= 0 || size > MAX_FEED_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Параметр limit должен быть от 1 до " + MAX_FEED_PAGE_SIZE);
+        }
+        validateUserExists(userId);
+        log.info("Получение ленты событий пользователя с ID: {}, before={}, limit={}, all={}",
+                userId, before, size, all);
+        return all ? feedStorage.getUserFeed(userId) : feedStorage.getUserFeed(userId, before, size);
+    }
+
+    public List<FeedEvent> getTimeline(Integer userId, Integer limit) {
         validateUserExists(userId);
-        log.info("Получение ленты событий пользователя с ID: {}", userId);
-        return feedStorage.getUserFeed(userId);
+        int size = limit != null ? limit : FeedTimelineCache.TIMELINE_SIZE;
+        if (size <= 0 || size > FeedTimelineCache.TIMELINE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Параметр limit должен быть от 1 до " + FeedTimelineCache.TIMELINE_SIZE);
+        }
+        log.info("Получение ленты активности друзей пользователя с ID: {}", userId);
+        return feedStorage.getTimeline(userId, size);
+    }
+
+    // Новые события пользователя после коммита; историю до подписки клиент берёт через getUserFeed
+    public SseEmitter streamUserFeed(Integer userId) {
+        validateUserExists(userId);
+        log.info("Подписка на ленту событий пользователя с ID: {}", userId);
+        return feedStreamHub.subscribe(userId);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(feedEventCounters.snapshot());
+        metrics.put("streams", feedStreamHub.snapshot());
+        return metrics;
     }
 
     public void addLikeEvent(Integer userId, Integer filmId) {
@@ -106,7 +153,7 @@ public class FeedService {
     }
 
     private void validateUserExists(Integer userId) {
-        if (userStorage.findById(userId).isEmpty()) {
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден");
         }
     }
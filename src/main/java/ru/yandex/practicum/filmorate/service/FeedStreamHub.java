@@ -0,0 +1,185 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.feed.FeedEventSubscriber;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Подписки на ленту пользователя по SSE. Поток outbox только кладёт событие в ограниченный буфер подписки
+ * и никогда не ждёт клиента; отправкой занимается виртуальный поток подписки.
+ * Если буфер переполнен, клиент получает событие resync с последним доставленным eventId и отключается:
+ * пропущенное он дочитывает через GET /users/{id}/feed.
+ */
+@Slf4j
+@Component
+public class FeedStreamHub implements FeedEventSubscriber {
+
+    // Служебные элементы очереди подписки: переполнение и закрытие соединения
+    private static final FeedEvent RESYNC = FeedEvent.builder().build();
+    private static final FeedEvent CLOSED = FeedEvent.builder().build();
+
+    private final Map<Integer, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final LongAdder resyncs = new LongAdder();
+    private final ExecutorService senders;
+    private final int bufferSize;
+    private final long heartbeatMs;
+    private final long timeoutMs;
+
+    @Autowired
+    public FeedStreamHub(@Value("${filmorate.feed.stream.buffer-size:256}") int bufferSize,
+                         @Value("${filmorate.feed.stream.heartbeat-ms:15000}") long heartbeatMs,
+                         @Value("${filmorate.feed.stream.timeout-ms:1800000}") long timeoutMs) {
+        this(Executors.newVirtualThreadPerTaskExecutor(), bufferSize, heartbeatMs, timeoutMs);
+    }
+
+    FeedStreamHub(ExecutorService senders, int bufferSize, long heartbeatMs, long timeoutMs) {
+        this.senders = senders;
+        this.bufferSize = bufferSize;
+        this.heartbeatMs = heartbeatMs;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public SseEmitter subscribe(Integer userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        subscribe(userId, emitter);
+        return emitter;
+    }
+
+    void subscribe(Integer userId, SseEmitter emitter) {
+        Subscription subscription = new Subscription(userId, emitter, new ArrayBlockingQueue<>(bufferSize));
+        // Добавление и удаление последней подписки — под блокировкой ключа: иначе close() мог бы убрать
+        // из карты набор, в который подписка только что добавлена, и она не получала бы событий
+        subscriptions.compute(userId, (id, userSubscriptions) -> {
+            Set<Subscription> result = userSubscriptions == null ? new CopyOnWriteArraySet<>() : userSubscriptions;
+            result.add(subscription);
+            return result;
+        });
+        emitter.onCompletion(() -> close(subscription));
+        emitter.onTimeout(() -> close(subscription));
+        emitter.onError(error -> close(subscription));
+        senders.execute(() -> send(subscription));
+        log.debug("Подписка на ленту пользователя {} открыта", userId);
+    }
+
+    // Вызывается из потока outbox: только неблокирующая постановка в буферы подписок
+    @Override
+    public void onEvents(List<FeedEvent> events) {
+        for (FeedEvent event : events) {
+            Set<Subscription> userSubscriptions = subscriptions.get(event.getUserId());
+            if (userSubscriptions == null) {
+                continue;
+            }
+            for (Subscription subscription : userSubscriptions) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("subscribers", subscriptions.values().stream().mapToInt(Set::size).sum());
+        result.put("resyncs", resyncs.sum());
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscriptions.values().forEach(userSubscriptions ->
+                userSubscriptions.forEach(subscription -> subscription.emitter.complete()));
+        senders.shutdownNow();
+    }
+
+    private void send(Subscription subscription) {
+        try {
+            while (true) {
+                FeedEvent event = subscription.queue.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                if (event == CLOSED) {
+                    return;
+                }
+                if (event == null) {
+                    subscription.emitter.send(SseEmitter.event().comment("ping"));
+                } else if (event == RESYNC) {
+                    resyncs.increment();
+                    log.info("Подписчик ленты пользователя {} не успевает, буфер переполнен — отключаем с resync",
+                            subscription.userId);
+                    subscription.emitter.send(SseEmitter.event()
+                            .name("resync")
+                            .data(Map.of("lastEventId", subscription.lastEventId)));
+                    subscription.emitter.complete();
+                    return;
+                } else {
+                    subscription.emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.getEventId()))
+                            .name("feed")
+                            .data(event));
+                    subscription.lastEventId = event.getEventId();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException e) {
+            // Клиент ушёл или соединение уже закрыто
+            log.debug("Подписка на ленту пользователя {} закрыта: {}", subscription.userId, e.getMessage());
+        } finally {
+            close(subscription);
+        }
+    }
+
+    private void close(Subscription subscription) {
+        boolean[] removed = new boolean[1];
+        subscriptions.computeIfPresent(subscription.userId, (id, userSubscriptions) -> {
+            removed[0] = userSubscriptions.remove(subscription);
+            return userSubscriptions.isEmpty() ? null : userSubscriptions;
+        });
+        if (!removed[0]) {
+            return;
+        }
+        subscription.closed = true;
+        subscription.queue.clear();
+        subscription.queue.offer(CLOSED);
+    }
+
+    private static final class Subscription {
+
+        private final Integer userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<FeedEvent> queue;
+        private volatile boolean closed;
+        private volatile int lastEventId;
+
+        private Subscription(Integer userId, SseEmitter emitter, BlockingQueue<FeedEvent> queue) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        // Поток outbox единственный, кто кладёт события, поэтому после clear() место под RESYNC есть
+        private void offer(FeedEvent event) {
+            if (closed || queue.offer(event)) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            queue.offer(RESYNC);
+        }
+    }
+}
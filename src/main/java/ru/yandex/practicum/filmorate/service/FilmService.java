@@ -8,11 +8,19 @@ import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.UnitOfWork;
 import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmFeatureIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.film.LikesMinHashIndex;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
@@ -20,6 +28,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -34,9 +43,19 @@ public class FilmService {
     private final GenreStorage genreStorage;
     private final DirectorStorage directorStorage;
     private final FeedStorage feedStorage;
-
-    public List<Film> findAll() {
-        return filmStorage.findAll();
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmFeatureIndex featureIndex;
+    private final LikesMatrix likesMatrix;
+    private final LikesMinHashIndex minHashIndex;
+    private final RecommendationCache recommendationCache;
+    private final RecommendationStorage recommendationStorage;
+    private final UnitOfWork unitOfWork;
+
+    // Проверка параметров выполняется сразу, а чтение из базы — когда ответ начнёт записываться
+    public Consumer<Consumer<Film>> streamFilms(Integer after, Integer limit, View view) {
+        validatePage(after, limit);
+        return consumer -> filmStorage.streamFilms(after != null ? after : 0, limit, view == View.FULL, consumer);
     }
 
     public Film create(Film film) {
@@ -44,7 +63,11 @@ public class FilmService {
         validateMpa(film);
         validateGenres(film);
         validateDirectors(film);
-        return filmStorage.create(film);
+        Film created = filmStorage.create(film);
+        popularityIndex.update(created);
+        searchIndex.indexFilm(created);
+        featureIndex.indexFilm(created);
+        return created;
     }
 
     public Film update(Film film) {
@@ -56,17 +79,28 @@ public class FilmService {
         validateGenres(film);
         validateDirectors(film);
 
-        if (filmStorage.findById(film.getId()).isEmpty()) {
+        if (!filmStorage.existsById(film.getId())) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Фильм не найден");
         }
-        return filmStorage.update(film);
+        Film updated = filmStorage.update(film);
+        popularityIndex.update(updated);
+        searchIndex.indexFilm(updated);
+        featureIndex.indexFilm(updated);
+        return updated;
     }
 
     public void removeFilm(Integer filmId) {
-        if (filmStorage.findById(filmId).isEmpty()) {
+        if (!filmStorage.existsById(filmId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Фильм не найден");
         }
         filmStorage.delete(filmId);
+        popularityIndex.remove(filmId);
+        searchIndex.removeFilm(filmId);
+        featureIndex.removeFilm(filmId);
+        for (int userId : likesMatrix.removeFilm(filmId)) {
+            minHashIndex.refreshUser(userId);
+            recommendationCache.invalidateUser(userId);
+        }
     }
 
     public Film findById(Integer id) {
@@ -77,27 +111,49 @@ public class FilmService {
     public Film addLike(Integer filmId, Integer userId) {
         validateFilmAndUserExist(filmId, userId);
 
-        feedStorage.createLikeEvent(userId, filmId, FeedEvent.Operation.ADD);
-
-        return filmStorage.addLike(filmId, userId);
+        // Лайк, событие ленты и сброс сохранённых рекомендаций — одним коммитом, индексы в памяти — после него
+        Film film = unitOfWork.execute(() -> {
+            Film liked = filmStorage.addLike(filmId, userId);
+            feedStorage.createLikeEvent(userId, filmId, FeedEvent.Operation.ADD);
+            recommendationStorage.markLikesChanged(userId);
+            return liked;
+        });
+        // Счётчик рейтинга меняется атомарно и только для нового лайка: матрица отличает повторный лайк
+        if (likesMatrix.addLike(userId, filmId)) {
+            popularityIndex.increment(filmId);
+        }
+        searchIndex.updateWeight(film);
+        minHashIndex.addLike(userId, filmId);
+        recommendationCache.invalidateUser(userId);
+        return film;
     }
 
     public Film removeLike(Integer filmId, Integer userId) {
         validateFilmAndUserExist(filmId, userId);
 
-        feedStorage.createLikeEvent(userId, filmId, FeedEvent.Operation.REMOVE);
-
-        return filmStorage.removeLike(filmId, userId);
+        Film film = unitOfWork.execute(() -> {
+            Film unliked = filmStorage.removeLike(filmId, userId);
+            feedStorage.createLikeEvent(userId, filmId, FeedEvent.Operation.REMOVE);
+            recommendationStorage.markLikesChanged(userId);
+            return unliked;
+        });
+        if (likesMatrix.removeLike(userId, filmId)) {
+            popularityIndex.decrement(filmId);
+        }
+        searchIndex.updateWeight(film);
+        minHashIndex.refreshUser(userId);
+        recommendationCache.invalidateUser(userId);
+        return film;
     }
 
-    public List<Film> searchFilms(String query, String by) {
+    public List<Film> searchFilms(String query, String by, boolean fuzzy, View view) {
 
         if (query == null || query.isBlank()) {
-            return getPopularFilms(10, null, null);
+            return getPopularFilms(10, null, null, view);
         }
 
         if (by == null || by.isBlank()) {
-            return filmStorage.searchFilms(query, false, true);
+            return filmStorage.findByIds(searchIndex.search(query, false, true, fuzzy), view == View.FULL);
         }
 
         Set<String> fields = Arrays.stream(by.split(","))
@@ -115,17 +171,33 @@ public class FilmService {
             );
         }
 
-        return filmStorage.searchFilms(query, searchByDirector, searchByTitle);
+        return filmStorage.findByIds(searchIndex.search(query, searchByDirector, searchByTitle, fuzzy),
+                view == View.FULL);
     }
 
-    public List<Film> getPopularFilms(Integer count, Integer genreId, Integer year) {
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр limit должен быть положительным");
+        }
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return searchIndex.suggest(prefix, limit);
+    }
+
+    public List<Film> getPopularFilms(Integer count, Integer genreId, Integer year, View view) {
         int filmsCount = count != null ? count : 10;
-        return filmStorage.getPopularFilms(filmsCount, genreId, year);
+        // Топ берём из резидентного рейтинга, из базы догружаем только сами фильмы
+        List<Integer> topIds = popularityIndex.getTopFilmIds(filmsCount, genreId, year);
+        return filmStorage.findByIds(topIds, view == View.FULL);
     }
 
     public Film addDirector(Integer filmId, Integer directorId) {
         validateFilmAndDirectorExists(filmId, directorId);
-        return filmStorage.addDirector(filmId, directorId);
+        Film film = filmStorage.addDirector(filmId, directorId);
+        searchIndex.indexFilm(film);
+        featureIndex.indexFilm(film);
+        return film;
     }
 
     public List<Film> getDirectorsFilms(Integer directorId, String sortBy) {
@@ -136,6 +208,15 @@ public class FilmService {
         return sortFilms(unsortedFilms, sortBy);
     }
 
+    private void validatePage(Integer after, Integer limit) {
+        if (after != null && after < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр after не может быть отрицательным");
+        }
+        if (limit != null && limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр limit должен быть положительным");
+        }
+    }
+
     private void validateReleaseDate(Film film) {
         if (film.getReleaseDate().isBefore(EARLY_RELEASE_DATE)) {
             log.warn("Ошибка валидации даты релиза для фильма: {}", film.getName());
@@ -181,16 +262,16 @@ public class FilmService {
     }
 
     private void validateFilmAndUserExist(Integer filmId, Integer userId) {
-        if (filmStorage.findById(filmId).isEmpty()) {
+        if (!filmStorage.existsById(filmId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Фильм не найден");
         }
-        if (userStorage.findById(userId).isEmpty()) {
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден");
         }
     }
 
     private void validateFilmAndDirectorExists(Integer filmId, Integer directorId) {
-        if (filmStorage.findById(filmId).isEmpty())
+        if (!filmStorage.existsById(filmId))
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Фильм не найден");
 
         if (directorStorage.getById(directorId).isEmpty())
@@ -211,15 +292,21 @@ public class FilmService {
                 .toList();
     }
 
-    public List<Film> getCommonFilms(Integer userId, Integer friendId) {
+    public List<Film> getCommonFilms(Integer userId, Integer friendId, View view) {
         validateUserExists(userId);
         validateUserExists(friendId);
 
-        return filmStorage.getCommonFilms(userId, friendId);
+        // Пересечение строк матрицы лайков, сначала самые популярные фильмы
+        List<Integer> filmIds = Arrays.stream(likesMatrix.commonFilms(userId, friendId))
+                .boxed()
+                .sorted(Comparator.comparingInt(likesMatrix::likeCount).reversed()
+                        .thenComparingInt(Integer::intValue))
+                .toList();
+        return filmIds.isEmpty() ? List.of() : filmStorage.findByIds(filmIds, view == View.FULL);
     }
 
     private void validateUserExists(Integer userId) {
-        if (userStorage.findById(userId).isEmpty()) {
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь с ID " + userId + " не найден");
         }
     }
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Число вызовов, среднее и максимальное время — упрощённый таймер вместо библиотеки метрик, которой в приложении нет.
+ * Счётчики без блокировок, поэтому запись не мешает параллельным запросам.
+ */
+final class LatencyStats {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    Map<String, Object> snapshot() {
+        long calls = count.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", calls);
+        result.put("meanMicros", calls == 0 ? 0 : totalNanos.sum() / calls / 1_000);
+        result.put("maxMicros", maxNanos.get() / 1_000);
+        return result;
+    }
+}
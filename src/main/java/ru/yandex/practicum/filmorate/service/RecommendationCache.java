@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Готовые рекомендации по пользователю и режиму с вытеснением давно не запрошенных (LRU).
+ * Запись помнит, от чьих лайков она зависит — самого пользователя и его соседей, — и сбрасывается
+ * только при изменении лайков кого-то из них, а не вся разом.
+ */
+@Component
+public class RecommendationCache {
+
+    static final int CAPACITY = 10_000;
+    // Число ячеек с номером последнего сброса; пользователи делят ячейку по остатку от id
+    private static final int STAMP_SLOTS = 4096;
+
+    private final int capacity;
+    private final Map<Key, Entry> entries;
+    // Обратный индекс: пользователь -> записи, которые устареют при изменении его лайков
+    private final Map<Integer, Set<Key>> dependents = new HashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    // Номер последнего сброса по ячейке пользователя: общая ячейка даёт лишь лишний пропуск put, а не устаревшую запись
+    private final long[] invalidatedAt = new long[STAMP_SLOTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RecommendationCache() {
+        this(CAPACITY);
+    }
+
+    RecommendationCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= RecommendationCache.this.capacity) {
+                    return false;
+                }
+                unlink(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    // Пусто, если записи нет или она посчитана по другой версии модели
+    public synchronized Optional<List<Integer>> get(int userId, String mode, long modelVersion) {
+        Entry entry = entries.get(new Key(userId, mode));
+        if (entry == null || entry.modelVersion() != modelVersion) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.filmIds());
+    }
+
+    // Снимок счётчика сбросов берётся до расчёта: если за время расчёта сбросили самого пользователя
+    // или кого-то из его соседей, результат не кладём; сбросы остальных пользователей put не мешают
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    public synchronized void put(int userId, String mode, long modelVersion, List<Integer> filmIds,
+                                 int[] neighbours, long stamp) {
+        if (invalidatedSince(userId, stamp)) {
+            return;
+        }
+        for (int neighbour : neighbours) {
+            if (invalidatedSince(neighbour, stamp)) {
+                return;
+            }
+        }
+        Key key = new Key(userId, mode);
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            unlink(key, previous);
+        }
+        Entry entry = new Entry(List.copyOf(filmIds), neighbours, modelVersion);
+        entries.put(key, entry);
+        dependents.computeIfAbsent(userId, id -> new HashSet<>()).add(key);
+        for (int neighbour : neighbours) {
+            dependents.computeIfAbsent(neighbour, id -> new HashSet<>()).add(key);
+        }
+    }
+
+    // Лайки пользователя изменились: сбрасываем его рекомендации и рекомендации тех, у кого он в соседях
+    public synchronized void invalidateUser(int userId) {
+        invalidatedAt[slot(userId)] = invalidations.incrementAndGet();
+        Set<Key> keys = dependents.remove(userId);
+        if (keys == null) {
+            return;
+        }
+        for (Key key : keys) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                unlink(key, entry);
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", entries.size());
+        result.put("hits", hitCount);
+        result.put("misses", total - hitCount);
+        result.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        return result;
+    }
+
+    private boolean invalidatedSince(int userId, long stamp) {
+        return invalidatedAt[slot(userId)] > stamp;
+    }
+
+    private static int slot(int userId) {
+        return Math.floorMod(userId, STAMP_SLOTS);
+    }
+
+    private void unlink(Key key, Entry entry) {
+        unlink(key.userId(), key);
+        for (int neighbour : entry.neighbours()) {
+            unlink(neighbour, key);
+        }
+    }
+
+    private void unlink(int userId, Key key) {
+        Set<Key> keys = dependents.get(userId);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            dependents.remove(userId);
+        }
+    }
+
+    private record Key(int userId, String mode) {
+    }
+
+    private record Entry(List<Integer> filmIds, int[] neighbours, long modelVersion) {
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStorage;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ночной расчёт рекомендаций режима user для всех пользователей с лайками — для рассылок и главной страницы.
+ * Пользователи делятся на части, которые считаются параллельно в пуле fork-join по общей матрице лайков
+ * без запросов к базе; каждая часть записывается в user_recommendations одной пачкой.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecommendationPrecomputeJob {
+
+    static final int PARTITION_SIZE = 500;
+
+    private final LikesMatrix likesMatrix;
+    private final RecommendationService recommendationService;
+    private final RecommendationStorage recommendationStorage;
+
+    // Через час после обучения факторизации, чтобы не делить с ним процессор
+    @Scheduled(cron = "0 30 4 * * *")
+    public void run() {
+        long start = System.nanoTime();
+        int[] userIds = likesMatrix.activeUsers();
+        // Время начала расчёта: строки пользователей, лайкнувших что-то позже, saveAll не перезапишет
+        PartitionTask task = new PartitionTask(userIds, 0, userIds.length, Instant.now());
+        ForkJoinPool.commonPool().invoke(task);
+        log.info("Ночной расчёт рекомендаций: пользователей {}, не сохранено {}, за {} мс",
+                userIds.length, task.failed.sum(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private final class PartitionTask extends RecursiveAction {
+
+        private final int[] userIds;
+        private final int from;
+        private final int to;
+        private final Instant computedAt;
+        private final LongAdder failed;
+
+        private PartitionTask(int[] userIds, int from, int to, Instant computedAt) {
+            this(userIds, from, to, computedAt, new LongAdder());
+        }
+
+        private PartitionTask(int[] userIds, int from, int to, Instant computedAt, LongAdder failed) {
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+            this.computedAt = computedAt;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARTITION_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PartitionTask(userIds, from, middle, computedAt, failed),
+                        new PartitionTask(userIds, middle, to, computedAt, failed));
+                return;
+            }
+
+            Map<Integer, List<Integer>> filmIdsByUser = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                filmIdsByUser.put(userIds[i], recommendationService.rankByUsers(userIds[i]));
+            }
+            try {
+                recommendationStorage.saveAll(filmIdsByUser, computedAt);
+            } catch (DataAccessException e) {
+                // Например, пользователя или фильм удалили во время расчёта — эти пользователи получат
+                // рекомендации на лету, остальные части расчёта это не задевает
+                failed.add(filmIdsByUser.size());
+                log.warn("Не удалось сохранить рекомендации для {} пользователей", filmIdsByUser.size(), e);
+            }
+        }
+    }
+}
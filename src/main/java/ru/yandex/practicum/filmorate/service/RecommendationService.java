@@ -6,38 +6,186 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmFeatureIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSimilarityIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikesFactorization;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.film.LikesMinHashIndex;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class RecommendationService {
 
+    private static final int NEIGHBOURS = 10;
+    private static final LikesMatrix.Similarity SIMILARITY = LikesMatrix.Similarity.OVERLAP;
+    // До этого числа пользователей с лайками соседей ищем полным перебором, дальше — среди LSH-кандидатов
+    static final int EXACT_SEARCH_LIMIT = 200_000;
+    // Режим als перебирает все фильмы, поэтому отдаём только лучшие по прогнозу
+    static final int FACTOR_CANDIDATES = 50;
+    // Режим content тоже отдаёт только лучшие: общий жанр есть у большой доли каталога
+    static final int CONTENT_CANDIDATES = 50;
+    // Ночной расчёт идёт раз в сутки; запас в час покрывает время самого расчёта
+    static final Duration PRECOMPUTED_TTL = Duration.ofHours(25);
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final LikesMatrix likesMatrix;
+    private final FilmSimilarityIndex similarityIndex;
+    private final LikesMinHashIndex minHashIndex;
+    private final LikesFactorization factorization;
+    private final FilmFeatureIndex featureIndex;
+    private final RecommendationCache cache;
+    private final RecommendationStorage recommendationStorage;
+
+    private final Map<String, LatencyStats> scoringLatency = new ConcurrentHashMap<>();
+    private final LongAdder precomputedHits = new LongAdder();
 
-    public List<Film> getRecommendations(Integer userId) {
+    // mode=user — по похожим пользователям, mode=item — по предрассчитанным похожим фильмам,
+    // mode=als — по векторам матричной факторизации, mode=content — по жанрам, режиссёрам и рейтингу MPA
+    // лайкнутых фильмов (работает и при паре лайков, когда похожих пользователей ещё нет)
+    public List<Film> getRecommendations(Integer userId, String mode) {
         // Проверяем существование пользователя
-        if (userStorage.findById(userId).isEmpty()) {
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND,
                     "Пользователь с ID " + userId + " не найден");
         }
 
-        // Находим похожего пользователя
-        Integer similarUserId = userStorage.findMostSimilarUser(userId);
+        String scoringMode = mode == null ? "user" : mode;
+        // Режим user считается по живой матрице лайков, остальные — по моделям, которые подменяются целиком
+        long modelVersion = switch (scoringMode) {
+            case "user" -> 0;
+            case "item" -> similarityIndex.version();
+            case "als" -> factorization.version();
+            case "content" -> featureIndex.version();
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Параметр mode должен быть user, item, als или content");
+        };
+
+        List<Integer> filmIds = cache.get(userId, scoringMode, modelVersion)
+                .or(() -> findPrecomputed(userId, scoringMode))
+                .orElseGet(() -> recompute(userId, scoringMode, modelVersion));
+
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Получаем рекомендации
+        return filmStorage.findByIds(filmIds);
+    }
+
+    // Время пересчёта рекомендаций по режимам (без загрузки фильмов и попаданий в кэш), доля попаданий в кэш,
+    // число ответов из ночного расчёта и время последнего обучения факторизации
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> scoring = new LinkedHashMap<>();
+        scoringLatency.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> scoring.put(entry.getKey(), entry.getValue().snapshot()));
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("scoring", scoring);
+        metrics.put("cache", cache.snapshot());
+        metrics.put("precomputedHits", precomputedHits.sum());
+        metrics.put("factorizationTrainingMillis", factorization.lastTrainingMillis());
+        return metrics;
+    }
+
+    public List<Film> getSimilarFilms(Integer filmId, int count) {
+        if (count <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр count должен быть положительным");
+        }
+        if (!filmStorage.existsById(filmId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Фильм не найден");
+        }
+
+        List<Integer> filmIds = similarityIndex.similarFilms(filmId, count);
+        return filmIds.isEmpty() ? List.of() : filmStorage.findByIds(filmIds);
+    }
 
-        if (similarUserId == null) {
+    // Рекомендации режима user в порядке ранга — для ночного расчёта, без проверок и кэша
+    List<Integer> rankByUsers(int userId) {
+        return rank(scoreByUsers(userId, findNeighbours(userId)));
+    }
+
+    // Ночной расчёт ведётся тем же способом, что и режим user, поэтому подходит только ему.
+    // В кэш ответ не кладём: соседи ночного расчёта не сохраняются, и запись не сбросилась бы при их лайках
+    private Optional<List<Integer>> findPrecomputed(Integer userId, String mode) {
+        if (!mode.equals("user")) {
+            return Optional.empty();
+        }
+        Optional<List<Integer>> found =
+                recommendationStorage.findFresh(userId, Instant.now().minus(PRECOMPUTED_TTL));
+        found.ifPresent(filmIds -> precomputedHits.increment());
+        return found;
+    }
+
+    private List<Integer> recompute(Integer userId, String mode, long modelVersion) {
+        long stamp = cache.stamp();
+        long start = System.nanoTime();
+        List<LikesMatrix.Neighbour> neighbours = List.of();
+        Map<Integer, Double> scores;
+        if (mode.equals("user")) {
+            neighbours = findNeighbours(userId);
+            scores = scoreByUsers(userId, neighbours);
+        } else if (mode.equals("item")) {
+            scores = similarityIndex.scoreCandidates(likesMatrix.likedFilms(userId));
+        } else if (mode.equals("als")) {
+            scores = factorization.scoreCandidates(userId, likesMatrix.likedFilms(userId), FACTOR_CANDIDATES);
+        } else {
+            scores = featureIndex.scoreCandidates(likesMatrix.likedFilms(userId), CONTENT_CANDIDATES);
+        }
+
+        List<Integer> filmIds = rank(scores);
+        scoringLatency.computeIfAbsent(mode, key -> new LatencyStats()).record(System.nanoTime() - start);
+        cache.put(userId, mode, modelVersion, filmIds,
+                neighbours.stream().mapToInt(LikesMatrix.Neighbour::userId).toArray(), stamp);
+        return filmIds;
+    }
+
+    private List<Integer> rank(Map<Integer, Double> scores) {
+        return scores.keySet().stream()
+                .sorted(Comparator.<Integer>comparingDouble(scores::get).reversed()
+                        .thenComparing(Comparator.comparingInt(likesMatrix::likeCount).reversed())
+                        .thenComparingInt(Integer::intValue))
+                .toList();
+    }
+
+    // Находим похожих пользователей
+    private List<LikesMatrix.Neighbour> findNeighbours(Integer userId) {
+        return likesMatrix.userCount() > EXACT_SEARCH_LIMIT
+                ? likesMatrix.scoreNeighbours(userId, minHashIndex.candidates(userId), NEIGHBOURS, SIMILARITY)
+                : likesMatrix.findNeighbours(userId, NEIGHBOURS, SIMILARITY);
+    }
+
+    private Map<Integer, Double> scoreByUsers(Integer userId, List<LikesMatrix.Neighbour> neighbours) {
+        if (neighbours.isEmpty()) {
             log.info("Для пользователя {} не найдено похожих пользователей", userId);
-            return List.of(); // Возвращаем пустой список
+            return Map.of();
         }
 
-        log.info("Для пользователя {} найден похожий пользователь {}",
-                userId, similarUserId);
+        log.info("Для пользователя {} найдено похожих пользователей: {}", userId, neighbours.size());
 
-        // Получаем рекомендации
-        return filmStorage.getRecommendedFilms(userId, similarUserId);
+        // Фильм получает сумму сходства всех соседей, которым он понравился; уже лайкнутые отсекает разность строк
+        Map<Integer, Double> scores = new HashMap<>();
+        for (LikesMatrix.Neighbour neighbour : neighbours) {
+            for (int filmId : likesMatrix.filmsNotLikedBy(neighbour.userId(), userId)) {
+                scores.merge(filmId, neighbour.similarity(), Double::sum);
+            }
+        }
+        return scores;
     }
-}
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.UnitOfWork;
 import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
@@ -23,6 +24,7 @@ public class ReviewService {
     private final UserStorage userStorage;
     private final FilmStorage filmStorage;
     private final FeedStorage feedStorage;
+    private final UnitOfWork unitOfWork;
 
     private void validateReview(Review review) {
         if (review.getContent() == null || review.getContent().isBlank()) {
@@ -79,11 +81,13 @@ public class ReviewService {
 
         review.setUseful(0);
 
-        Review createdReview = reviewStorage.create(review);
+        Review createdReview = unitOfWork.execute(() -> {
+            Review created = reviewStorage.create(review);
+            feedStorage.createReviewEvent(review.getUserId(), created.getReviewId(), FeedEvent.Operation.ADD);
+            return created;
+        });
         log.info("Создан отзыв с ID: {}", createdReview.getReviewId());
 
-        feedStorage.createReviewEvent(review.getUserId(), createdReview.getReviewId(), FeedEvent.Operation.ADD);
-
         return createdReview;
     }
 
@@ -113,12 +117,15 @@ public class ReviewService {
         // Сохраняем полезность
         review.setUseful(existingReview.getUseful());
 
-        Review updatedReview = reviewStorage.update(review);
+        // Обновление и событие UPDATE для оригинального автора — одним коммитом
+        Review updatedReview = unitOfWork.execute(() -> {
+            Review updated = reviewStorage.update(review);
+            feedStorage.createReviewEvent(existingReview.getUserId(), review.getReviewId(),
+                    FeedEvent.Operation.UPDATE);
+            return updated;
+        });
         log.info("Отзыв с ID {} обновлен", updatedReview.getReviewId());
 
-        // Создаем событие UPDATE для оригинального автора
-        feedStorage.createReviewEvent(existingReview.getUserId(), review.getReviewId(), FeedEvent.Operation.UPDATE);
-
         return updatedReview;
     }
 
@@ -142,10 +149,11 @@ public class ReviewService {
         // Получаем отзыв перед удалением, чтобы узнать userId
         Review review = findById(id);
 
-        reviewStorage.delete(id);
+        unitOfWork.run(() -> {
+            reviewStorage.delete(id);
+            feedStorage.createReviewEvent(review.getUserId(), id, FeedEvent.Operation.REMOVE);
+        });
         log.info("Отзыв с ID {} удален", id);
-
-        feedStorage.createReviewEvent(review.getUserId(), id, FeedEvent.Operation.REMOVE);
     }
 
     public Review findById(Integer id) {
@@ -176,7 +184,7 @@ public class ReviewService {
                 );
             }
 
-            if (filmStorage.findById(filmId).isEmpty()) {
+            if (!filmStorage.existsById(filmId)) {
                 throw new ResponseStatusException(
                         HttpStatus.NOT_FOUND,
                         "Фильм не найден"
@@ -239,14 +247,14 @@ public class ReviewService {
     }
 
     private void validateUserAndFilmExist(Integer userId, Integer filmId) {
-        if (userStorage.findById(userId).isEmpty()) {
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(
                     HttpStatus.NOT_FOUND,
                     "Пользователь не найден"
             );
         }
 
-        if (filmStorage.findById(filmId).isEmpty()) {
+        if (!filmStorage.existsById(filmId)) {
             throw new ResponseStatusException(
                     HttpStatus.NOT_FOUND,
                     "Фильм не найден"
@@ -276,7 +284,7 @@ public class ReviewService {
             );
         }
 
-        if (userStorage.findById(userId).isEmpty()) {
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(
                     HttpStatus.NOT_FOUND,
                     "Пользователь не найден"
@@ -7,9 +7,15 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UnitOfWork;
 import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedTimelineCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.film.LikesMinHashIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -17,9 +23,17 @@ import java.util.List;
 public class UserService {
     private final UserStorage userStorage;
     private final FeedStorage feedStorage;
-
-    public List<User> findAll() {
-        return userStorage.findAll();
+    private final FilmPopularityIndex popularityIndex;
+    private final LikesMatrix likesMatrix;
+    private final LikesMinHashIndex minHashIndex;
+    private final RecommendationCache recommendationCache;
+    private final FeedTimelineCache feedTimelineCache;
+    private final UnitOfWork unitOfWork;
+
+    // Проверка параметров выполняется сразу, а чтение из базы — когда ответ начнёт записываться
+    public Consumer<Consumer<User>> streamUsers(Integer after, Integer limit, View view) {
+        validatePage(after, limit);
+        return consumer -> userStorage.streamUsers(after != null ? after : 0, limit, view == View.FULL, consumer);
     }
 
     public User create(User user) {
@@ -32,17 +46,25 @@ public class UserService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ID пользователя обязателен");
         }
         setDisplayName(user);
-        if (userStorage.findById(user.getId()).isEmpty()) {
+        if (!userStorage.existsById(user.getId())) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден");
         }
         return userStorage.update(user);
     }
 
     public void removeUser(Integer userId) {
-        if (userStorage.findById(userId).isEmpty()) {
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден");
         }
-        userStorage.delete(userId);
+        unitOfWork.run(() -> userStorage.delete(userId));
+        // Лайки удалены каскадно; счётчики рейтинга снимаем после коммита и только за лайки, которые были
+        // в матрице, — как при удалении одного лайка
+        for (int filmId : likesMatrix.removeUser(userId)) {
+            popularityIndex.decrement(filmId);
+        }
+        minHashIndex.removeUser(userId);
+        recommendationCache.invalidateUser(userId);
+        feedTimelineCache.removeUser(userId);
     }
 
     public User findById(Integer id) {
@@ -52,36 +74,48 @@ public class UserService {
 
     public void addFriend(Integer userId, Integer friendId) {
         validateUsersExist(userId, friendId);
-        userStorage.addFriend(userId, friendId);
+        unitOfWork.run(() -> {
+            userStorage.addFriend(userId, friendId);
+            feedStorage.createFriendEvent(userId, friendId, FeedEvent.Operation.ADD);
+        });
         log.info("Пользователь {} добавил пользователя {} в друзья", userId, friendId);
-
-        feedStorage.createFriendEvent(userId, friendId, FeedEvent.Operation.ADD);
     }
 
 
     public void removeFriend(Integer userId, Integer friendId) {
         validateUsersExist(userId, friendId);
-        userStorage.removeFriend(userId, friendId);
+        unitOfWork.run(() -> {
+            userStorage.removeFriend(userId, friendId);
+            feedStorage.removeFromTimeline(userId, friendId);
+            feedStorage.createFriendEvent(userId, friendId, FeedEvent.Operation.REMOVE);
+        });
         log.info("Пользователь {} удалил пользователя {} из друзей", userId, friendId);
-
-        feedStorage.createFriendEvent(userId, friendId, FeedEvent.Operation.REMOVE);
     }
 
-    public List<User> getFriends(Integer userId) {
-        if (userStorage.findById(userId).isEmpty()) {
+    public List<User> getFriends(Integer userId, View view) {
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден");
         }
-        return userStorage.getFriends(userId);
+        return userStorage.getFriends(userId, view == View.FULL);
     }
 
-    public List<User> getCommonFriends(Integer userId, Integer otherUserId) {
+    public List<User> getCommonFriends(Integer userId, Integer otherUserId, View view) {
         validateUsersExist(userId, otherUserId);
-        List<User> commonFriends = userStorage.getCommonFriends(userId, otherUserId);
+        List<User> commonFriends = userStorage.getCommonFriends(userId, otherUserId, view == View.FULL);
         log.info("Найдено {} общих друзей между пользователями {} и {}",
                 commonFriends.size(), userId, otherUserId);
         return commonFriends;
     }
 
+    private void validatePage(Integer after, Integer limit) {
+        if (after != null && after < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр after не может быть отрицательным");
+        }
+        if (limit != null && limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр limit должен быть положительным");
+        }
+    }
+
     private void setDisplayName(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
@@ -90,10 +124,14 @@ public class UserService {
     }
 
     private void validateUsersExist(Integer userId, Integer otherUserId) {
-        if (userStorage.findById(userId).isEmpty()) {
+        // Обычно оба пользователя есть — проверяем их одним вызовом, а по отдельности только ради текста ошибки
+        if (userStorage.existsAll(List.of(userId, otherUserId))) {
+            return;
+        }
+        if (!userStorage.existsById(userId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Пользователь не найден");
         }
-        if (userStorage.findById(otherUserId).isEmpty()) {
+        if (!userStorage.existsById(otherUserId)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Другой пользователь не найден");
         }
     }
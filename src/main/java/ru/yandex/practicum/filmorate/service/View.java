@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Форма ответа для списков фильмов и пользователей: full — с полными списками id лайков и друзей,
+ * summary — только с их количеством, без загрузки самих списков из базы.
+ */
+public enum View {
+    FULL, SUMMARY;
+
+    public static View parse(String value) {
+        if (value == null || value.equalsIgnoreCase("full")) {
+            return FULL;
+        }
+        if (value.equalsIgnoreCase("summary")) {
+            return SUMMARY;
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр view должен быть full или summary");
+    }
+}
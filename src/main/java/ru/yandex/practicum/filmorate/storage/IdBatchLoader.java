@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Выборка строк по набору id. Вместо IN (?, ?, ...) с плейсхолдером на каждый id набор передаётся
+ * одним параметром-массивом, поэтому текст SQL не зависит от размера набора и план разбирается один раз.
+ * Большие наборы режутся на чанки фиксированного размера: в H2 стоимость = ANY(?) растёт быстрее длины массива,
+ * а массив длиннее 65536 элементов не принимается вовсе.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdBatchLoader {
+
+    // Маркер в тексте запроса, на месте которого подставляется условие по набору id: "WHERE film_id :ids"
+    public static final String IDS = ":ids";
+
+    static final int CHUNK_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void query(String sql, Collection<Integer> ids, RowCallbackHandler handler) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        queryInChunks(sql, ids.stream().distinct().toArray(Integer[]::new), CHUNK_SIZE, handler);
+    }
+
+    public <T> List<T> query(String sql, Collection<Integer> ids, RowMapper<T> rowMapper) {
+        List<T> result = new ArrayList<>();
+        query(sql, ids, rs -> {
+            result.add(rowMapper.mapRow(rs, result.size()));
+        });
+        return result;
+    }
+
+    void queryInChunks(String sql, Integer[] ids, int chunkSize, RowCallbackHandler handler) {
+        String arraySql = sql.replace(IDS, "= ANY(?)");
+        for (int from = 0; from < ids.length; from += chunkSize) {
+            Integer[] chunk = Arrays.copyOfRange(ids, from, Math.min(from + chunkSize, ids.length));
+            jdbcTemplate.query(arraySql, (PreparedStatementSetter) stmt -> stmt.setObject(1, chunk), handler);
+        }
+    }
+}
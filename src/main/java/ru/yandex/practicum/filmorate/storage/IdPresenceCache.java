@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Кэш идентификаторов, существование которых уже подтверждено базой. Хранит только положительные ответы:
+ * отсутствующий id всегда перепроверяется запросом, поэтому строки, добавленные в обход хранилища, не теряются.
+ */
+public class IdPresenceCache {
+
+    private final Set<Integer> known = ConcurrentHashMap.newKeySet();
+    // Число вытеснений: ответ базы, полученный до вытеснения, в кэш уже не кладётся
+    private final AtomicLong evictions = new AtomicLong();
+
+    public boolean exists(Integer id, Predicate<Integer> loader) {
+        if (id == null) {
+            return false;
+        }
+        if (known.contains(id)) {
+            return true;
+        }
+        long stamp = evictions.get();
+        if (loader.test(id)) {
+            addIfNotEvicted(id, stamp);
+            return true;
+        }
+        return false;
+    }
+
+    // loader получает непроверенные id и возвращает те из них, что есть в базе
+    public boolean existsAll(Collection<Integer> ids, Function<List<Integer>, Collection<Integer>> loader) {
+        // Множество: повторы в большой пачке id отсекаются за O(1) на id
+        Set<Integer> unknown = new LinkedHashSet<>();
+        for (Integer id : ids) {
+            if (id == null) {
+                return false;
+            }
+            if (!known.contains(id)) {
+                unknown.add(id);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return true;
+        }
+
+        long stamp = evictions.get();
+        Collection<Integer> found = loader.apply(new ArrayList<>(unknown));
+        found.forEach(id -> addIfNotEvicted(id, stamp));
+        return found.size() == unknown.size();
+    }
+
+    // Внутри транзакции id попадает в кэш только после коммита, чтобы откат не оставил «призрак»
+    public void add(Integer id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    known.add(id);
+                }
+            });
+        } else {
+            known.add(id);
+        }
+    }
+
+    // Удалённый id вытесняется после коммита: до него строка ещё видна другим транзакциям,
+    // и параллельная проверка успела бы вернуть его в кэш
+    public void evict(Integer id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(id);
+                }
+            });
+        } else {
+            evictNow(id);
+        }
+    }
+
+    private void evictNow(Integer id) {
+        evictions.incrementAndGet();
+        known.remove(id);
+    }
+
+    private void addIfNotEvicted(Integer id, long stamp) {
+        if (evictions.get() == stamp) {
+            add(id);
+        }
+    }
+}
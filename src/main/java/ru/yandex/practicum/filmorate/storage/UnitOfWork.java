@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Единица работы: изменение данных, его событие ленты и строка outbox фиксируются одной транзакцией —
+ * один коммит на действие, и событие не остаётся в ленте, если само изменение не удалось.
+ * Обновления индексов в памяти сервисы делают уже после возврата, то есть после коммита.
+ */
+@Component
+public class UnitOfWork {
+
+    private final TransactionTemplate transactionTemplate;
+
+    public UnitOfWork(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public <T> T execute(Supplier<T> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    public void run(Runnable work) {
+        transactionTemplate.executeWithoutResult(status -> work.run());
+    }
+}
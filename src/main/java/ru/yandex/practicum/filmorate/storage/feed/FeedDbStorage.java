@@ -2,25 +2,70 @@ package ru.yandex.practicum.filmorate.storage.feed;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * События пользователей и ленты активности друзей. Лента строится при записи (fan-out-on-write):
+ * новое событие сразу раскладывается в feed_timeline всех подписчиков автора — тех, кто добавил его в друзья, —
+ * и в кольцевые буферы тех из них, чьи ленты держит FeedTimelineCache. Чтение ленты — одна выборка по ключу.
+ * У автора с числом подписчиков больше CELEBRITY_FOLLOWERS раскладка стоила бы слишком дорого на каждое событие,
+ * поэтому его события не раскладываются, а подмешиваются при чтении ленты подписчика (fan-out-on-read).
+ * Событие пишется вместе со строкой outbox в транзакции самого действия, а раскладку по лентам пачками
+ * выполняет FeedOutboxRelay после коммита.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class FeedDbStorage implements FeedStorage {
 
+    static final int CELEBRITY_FOLLOWERS = 10_000;
+
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO feed_events (user_id, entity_id, event_type, operation, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    private static final Comparator<FeedEvent> NEWEST_FIRST =
+            Comparator.comparing(FeedEvent::getEventId).reversed();
+
     private final JdbcTemplate jdbcTemplate;
+    private final FeedTimelineCache timelineCache;
+    private final IdBatchLoader idBatchLoader;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public int loadCelebrities() {
+        List<Integer> celebrities = jdbcTemplate.queryForList(
+                "SELECT friend_id FROM friendships GROUP BY friend_id HAVING COUNT(*) > ?",
+                Integer.class, CELEBRITY_FOLLOWERS);
+        timelineCache.setCelebrities(celebrities);
+        log.info("Авторов с подмешиванием событий при чтении ленты: {}", celebrities.size());
+        return celebrities.size();
+    }
 
     @Override
     @Transactional(readOnly = true)
@@ -30,9 +75,66 @@ public class FeedDbStorage implements FeedStorage {
         return jdbcTemplate.query(sql, this::mapRowToFeedEvent, userId);
     }
 
+    // Ключевая пагинация по уникальному индексу (user_id, event_id): обратный проход от before без OFFSET,
+    // поэтому стоимость страницы не зависит от длины истории
+    @Override
+    @Transactional(readOnly = true)
+    public List<FeedEvent> getUserFeed(Integer userId, Integer before, int limit) {
+        String sql = "SELECT * FROM feed_events WHERE user_id = ? AND event_id < ? ORDER BY event_id DESC LIMIT ?";
+
+        List<FeedEvent> page = jdbcTemplate.query(sql, this::mapRowToFeedEvent,
+                userId, before != null ? before : Integer.MAX_VALUE, limit);
+        Collections.reverse(page);
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FeedEvent> getTimeline(Integer userId, int limit) {
+        List<FeedEvent> timeline = timelineCache.get(userId).orElseGet(() -> loadTimeline(userId));
+        if (timelineCache.hasCelebrities()) {
+            timeline = mergeCelebrityEvents(userId, timeline);
+        }
+        return timeline.size() > limit ? timeline.subList(0, limit) : timeline;
+    }
+
+    @Override
+    @Transactional
+    public void removeFromTimeline(Integer userId, Integer authorId) {
+        removeFromTimeline(userId, authorId, Integer.MAX_VALUE);
+    }
+
+    // Только события автора старше beforeEventId: более поздние могли прийти после повторного добавления в друзья
+    private void removeFromTimeline(Integer userId, Integer authorId, int beforeEventId) {
+        String sql = "DELETE FROM feed_timeline WHERE user_id = ? AND event_id < ? " +
+                "AND event_id IN (SELECT event_id FROM feed_events WHERE user_id = ?)";
+        jdbcTemplate.update(sql, userId, beforeEventId, authorId);
+        // До коммита параллельное чтение ещё видит удаляемые строки и могло бы снова положить их в буфер
+        afterCommit(() -> timelineCache.invalidate(List.of(userId)));
+    }
+
+    // Между подрезками лента может быть длиннее TIMELINE_SIZE: чтение всё равно берёт только последние события
+    @Override
+    @Scheduled(cron = "0 30 * * * *")
+    @Transactional
+    public int trimTimelines() {
+        List<Integer> overflowing = jdbcTemplate.queryForList(
+                "SELECT user_id FROM feed_timeline GROUP BY user_id HAVING COUNT(*) > ?",
+                Integer.class, FeedTimelineCache.TIMELINE_SIZE);
+        String sql = "DELETE FROM feed_timeline WHERE user_id = ? AND event_id <= (" +
+                "SELECT event_id FROM feed_timeline WHERE user_id = ? ORDER BY event_id DESC LIMIT 1 OFFSET ?)";
+        int removed = 0;
+        for (Integer userId : overflowing) {
+            removed += jdbcTemplate.update(sql, userId, userId, FeedTimelineCache.TIMELINE_SIZE);
+        }
+        log.info("Подрезка лент активности: лент {}, удалено строк {}", overflowing.size(), removed);
+        return removed;
+    }
+
     @Override
     @Transactional
     public void deleteEventsByUserId(Integer userId) {
+        invalidateTimelinesWith("SELECT event_id FROM feed_events WHERE user_id = ?", userId);
         String sql = "DELETE FROM feed_events WHERE user_id = ?";
         jdbcTemplate.update(sql, userId);
         log.info("Удалены события пользователя с ID: {}", userId);
@@ -41,11 +143,36 @@ public class FeedDbStorage implements FeedStorage {
     @Override
     @Transactional
     public void deleteEventsByEntityId(Integer entityId, FeedEvent.EventType eventType) {
+        invalidateTimelinesWith("SELECT event_id FROM feed_events WHERE entity_id = ? AND event_type = ?",
+                entityId, eventType.name());
         String sql = "DELETE FROM feed_events WHERE entity_id = ? AND event_type = ?";
         jdbcTemplate.update(sql, entityId, eventType.name());
         log.info("Удалены события для сущности ID: {}, тип: {}", entityId, eventType);
     }
 
+    // Сбрасываются только буферы подписчиков, в чьи ленты разложены удаляемые события, и только после коммита
+    private void invalidateTimelinesWith(String eventIdsSql, Object... args) {
+        List<Integer> followers = jdbcTemplate.queryForList(
+                "SELECT DISTINCT user_id FROM feed_timeline WHERE event_id IN (" + eventIdsSql + ")",
+                Integer.class, args);
+        if (!followers.isEmpty()) {
+            afterCommit(() -> timelineCache.invalidate(followers));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     private FeedEvent mapRowToFeedEvent(ResultSet rs, int rowNum) throws SQLException {
         return FeedEvent.builder()
                 .eventId(rs.getInt("event_id"))
@@ -57,28 +184,148 @@ public class FeedDbStorage implements FeedStorage {
                 .build();
     }
 
+    private List<FeedEvent> loadTimeline(Integer userId) {
+        long stamp = timelineCache.stamp();
+        String sql = "SELECT e.* FROM feed_timeline t " +
+                "JOIN feed_events e ON e.event_id = t.event_id " +
+                "WHERE t.user_id = ? ORDER BY t.event_id DESC LIMIT ?";
+        List<FeedEvent> timeline = jdbcTemplate.query(sql, this::mapRowToFeedEvent,
+                userId, FeedTimelineCache.TIMELINE_SIZE);
+        timelineCache.put(userId, timeline, stamp);
+        return timeline;
+    }
+
+    // События знаменитостей среди друзей пользователя не разложены по лентам — берём их последние события напрямую
+    private List<FeedEvent> mergeCelebrityEvents(Integer userId, List<FeedEvent> timeline) {
+        List<Integer> celebrities = jdbcTemplate.queryForList(
+                        "SELECT friend_id FROM friendships WHERE user_id = ?", Integer.class, userId).stream()
+                .filter(timelineCache::isCelebrity)
+                .toList();
+        if (celebrities.isEmpty()) {
+            return timeline;
+        }
+        // LIMIT действует на каждый чанк id отдельно, поэтому общий порядок и отсечение — после слияния
+        List<FeedEvent> pulled = idBatchLoader.query(
+                "SELECT * FROM feed_events WHERE user_id " + IdBatchLoader.IDS
+                        + " ORDER BY event_id DESC LIMIT " + FeedTimelineCache.TIMELINE_SIZE,
+                celebrities, this::mapRowToFeedEvent);
+
+        // Событие могло попасть в ленту и раскладкой — пока у автора ещё было мало подписчиков
+        Set<Integer> seen = new HashSet<>();
+        List<FeedEvent> merged = new ArrayList<>(timeline.size() + pulled.size());
+        for (FeedEvent event : timeline) {
+            if (seen.add(event.getEventId())) {
+                merged.add(event);
+            }
+        }
+        for (FeedEvent event : pulled) {
+            if (seen.add(event.getEventId())) {
+                merged.add(event);
+            }
+        }
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > FeedTimelineCache.TIMELINE_SIZE
+                ? merged.subList(0, FeedTimelineCache.TIMELINE_SIZE) : merged;
+    }
+
+    // Событие и строка outbox пишутся в транзакции вызывающего (UnitOfWork); раскладка по лентам — в FeedOutboxRelay
     @Override
     @Transactional
     public FeedEvent createEvent(FeedEvent event) {
-        String sql = "INSERT INTO feed_events (user_id, entity_id, event_type, operation, timestamp) " +
-                "VALUES (?, ?, ?, ?, ?)";
-
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sql, new String[]{"event_id"});
-            stmt.setInt(1, event.getUserId());
-            stmt.setInt(2, event.getEntityId());
-            stmt.setString(3, event.getEventType().name());
-            stmt.setString(4, event.getOperation().name());
-            stmt.setLong(5, event.getTimestamp());
+            PreparedStatement stmt = connection.prepareStatement(INSERT_EVENT_SQL, new String[]{"event_id"});
+            setEventParameters(stmt, event);
             return stmt;
         }, keyHolder);
 
         event.setEventId(keyHolder.getKey().intValue());
+        jdbcTemplate.update("INSERT INTO feed_outbox (event_id) VALUES (?)", event.getEventId());
+        eventPublisher.publishEvent(new FeedOutboxRelay.Appended());
         return event;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<FeedEvent> findOutbox(int limit) {
+        String sql = "SELECT e.* FROM feed_outbox o JOIN feed_events e ON e.event_id = o.event_id " +
+                "ORDER BY o.id LIMIT ?";
+        return jdbcTemplate.query(sql, this::mapRowToFeedEvent, limit);
+    }
+
+    // Раскладка и удаление из outbox в одной транзакции: событие попадает в ленты ровно один раз
+    @Override
+    @Transactional
+    public void publishOutbox(List<FeedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        fanOut(events);
+        // Удаление из друзей повторяем при рассылке: раскладка, прочитавшая дружбу до её удаления,
+        // могла зафиксироваться уже после removeFromTimeline в транзакции запроса. Пачка раскладывается
+        // целиком, поэтому повтор снимает только события старше удаления — иначе пропали бы события
+        // из той же пачки, разосланные после повторного добавления в друзья
+        events.stream()
+                .filter(event -> event.getEventType() == FeedEvent.EventType.FRIEND
+                        && event.getOperation() == FeedEvent.Operation.REMOVE)
+                .forEach(event -> removeFromTimeline(event.getUserId(), event.getEntityId(), event.getEventId()));
+        Integer[] eventIds = events.stream().map(FeedEvent::getEventId).toArray(Integer[]::new);
+        jdbcTemplate.update("DELETE FROM feed_outbox WHERE event_id = ANY(?)", (Object) eventIds);
+    }
+
+    private static void setEventParameters(PreparedStatement stmt, FeedEvent event) throws SQLException {
+        stmt.setInt(1, event.getUserId());
+        stmt.setInt(2, event.getEntityId());
+        stmt.setString(3, event.getEventType().name());
+        stmt.setString(4, event.getOperation().name());
+        stmt.setLong(5, event.getTimestamp());
+    }
+
+    // Раскладка событий в ленты подписчиков их авторов одной пачкой; в буферы памяти — после фиксации транзакции
+    private void fanOut(List<FeedEvent> events) {
+        Map<Integer, List<Integer>> followersByAuthor = new HashMap<>();
+        List<Delivery> deliveries = new ArrayList<>();
+        int rows = 0;
+        for (FeedEvent event : events) {
+            List<Integer> followers = followersByAuthor.computeIfAbsent(event.getUserId(), this::findFollowers);
+            if (!followers.isEmpty()) {
+                deliveries.add(new Delivery(followers, event));
+                rows += followers.size();
+            }
+        }
+        if (deliveries.isEmpty()) {
+            return;
+        }
+
+        List<int[]> timelineRows = new ArrayList<>(rows);
+        for (Delivery delivery : deliveries) {
+            for (Integer followerId : delivery.followers()) {
+                timelineRows.add(new int[]{followerId, delivery.event().getEventId()});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO feed_timeline (user_id, event_id) VALUES (?, ?)",
+                timelineRows, timelineRows.size(), (stmt, row) -> {
+                    stmt.setInt(1, row[0]);
+                    stmt.setInt(2, row[1]);
+                });
+
+        afterCommit(() -> deliveries.forEach(d -> timelineCache.deliver(d.followers(), d.event())));
+    }
+
+    // Подписчики автора; у знаменитости — пустой список, её события подмешиваются при чтении
+    private List<Integer> findFollowers(Integer authorId) {
+        List<Integer> followers = jdbcTemplate.queryForList(
+                "SELECT user_id FROM friendships WHERE friend_id = ? LIMIT ?",
+                Integer.class, authorId, CELEBRITY_FOLLOWERS + 1);
+        boolean celebrity = followers.size() > CELEBRITY_FOLLOWERS;
+        timelineCache.markCelebrity(authorId, celebrity);
+        return celebrity ? List.of() : followers;
+    }
+
+    private record Delivery(List<Integer> followers, FeedEvent event) {
+    }
+
     @Override
     @Transactional
     public void createLikeEvent(Integer userId, Integer filmId, FeedEvent.Operation operation) {
@@ -90,8 +337,8 @@ public class FeedDbStorage implements FeedStorage {
                 .timestamp(Instant.now().toEpochMilli())
                 .build();
         createEvent(event);
-        log.info("Создано событие LIKE: операция={}, пользователь={}, фильм={}, eventId={}",
-                operation, userId, filmId, event.getEventId());
+        log.info("Создано событие LIKE: операция={}, пользователь={}, фильм={}",
+                operation, userId, filmId);
     }
 
     @Override
@@ -120,7 +367,7 @@ public class FeedDbStorage implements FeedStorage {
                 .timestamp(Instant.now().toEpochMilli())
                 .build();
         createEvent(event);
-        log.info("Создано событие REVIEW: операция={}, пользователь={}, отзыв={}, eventId={}",
-                operation, userId, reviewId, event.getEventId());
+        log.info("Создано событие REVIEW: операция={}, пользователь={}, отзыв={}",
+                operation, userId, reviewId);
     }
-}
\ No newline at end of file
+}
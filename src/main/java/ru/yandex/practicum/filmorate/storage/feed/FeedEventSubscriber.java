@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.List;
+
+/**
+ * Получатель событий ленты из outbox. Вызывается потоком FeedOutboxRelay после того, как пачка
+ * зафиксирована в лентах, в порядке записи событий; не должен надолго блокировать рассылку.
+ */
+public interface FeedEventSubscriber {
+
+    void onEvents(List<FeedEvent> events);
+}
@@ -0,0 +1,201 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновая рассылка outbox ленты. Поток "feed-outbox-relay" просыпается после коммита транзакции, записавшей
+ * событие, забирает события outbox пачками по порядку записи, раскладывает их по лентам подписчиков
+ * с удалением из outbox одной транзакцией и передаёт пачку подписчикам в памяти (FeedEventSubscriber).
+ * <p>
+ * Пачка добирается не дольше flush-interval-ms, пока в ней меньше batch-size событий. Если неразосланных
+ * событий больше capacity, запрос сам разбирает outbox после своего коммита и тем замедляется, пока
+ * рассылка не догонит. В режиме DURABLE запрос всегда разбирает outbox сам, не полагаясь на фоновый поток.
+ * <p>
+ * Пока новых событий нет, база не опрашивается. Строки, оставшиеся после аварийной остановки,
+ * разбираются при старте. После ошибки пачка повторяется через retry-interval-ms.
+ */
+@Slf4j
+@Component
+public class FeedOutboxRelay implements SmartLifecycle {
+
+    // Сигнал о новой строке outbox; доставляется слушателю после коммита транзакции
+    public record Appended() {
+    }
+
+    public enum Mode { ASYNC, DURABLE }
+
+    private final FeedStorage feedStorage;
+    private final List<FeedEventSubscriber> subscribers;
+    private final Mode mode;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int capacity;
+    private final long retryIntervalMs;
+
+    private final Semaphore wakeUps = new Semaphore(0);
+    // Есть ли в outbox неразобранные строки; при старте — неизвестно, поэтому да
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    // Событий записано после последней рассылки; строки, оставшиеся с прошлого запуска, не учитываются
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile boolean running;
+    private Thread relay;
+
+    public FeedOutboxRelay(FeedStorage feedStorage,
+                           List<FeedEventSubscriber> subscribers,
+                           @Value("${filmorate.feed.outbox.mode:ASYNC}") Mode mode,
+                           @Value("${filmorate.feed.outbox.batch-size:500}") int batchSize,
+                           @Value("${filmorate.feed.outbox.flush-interval-ms:10}") long flushIntervalMs,
+                           @Value("${filmorate.feed.outbox.capacity:10000}") int capacity,
+                           @Value("${filmorate.feed.outbox.retry-interval-ms:1000}") long retryIntervalMs) {
+        this.feedStorage = feedStorage;
+        this.subscribers = subscribers;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.capacity = capacity;
+        this.retryIntervalMs = retryIntervalMs;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAppended(Appended appended) {
+        dirty.set(true);
+        int queued = pending.incrementAndGet();
+        if (mode == Mode.DURABLE || queued > capacity) {
+            relayInline(queued);
+        } else {
+            wakeUps.release();
+        }
+    }
+
+    // Разбирает outbox до конца в вызывающем потоке; возвращает число разосланных событий
+    public synchronized int relayPending() {
+        if (!dirty.getAndSet(false)) {
+            return 0;
+        }
+        int relayed = 0;
+        try {
+            List<FeedEvent> batch;
+            do {
+                batch = feedStorage.findOutbox(batchSize);
+                feedStorage.publishOutbox(batch);
+                int published = batch.size();
+                pending.updateAndGet(queued -> Math.max(0, queued - published));
+                notifySubscribers(batch);
+                relayed += published;
+            } while (batch.size() == batchSize);
+        } catch (RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        }
+        return relayed;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        relay = new Thread(this::relayLoop, "feed-outbox-relay");
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    // Останавливается раньше, чем закрывается источник данных: то, что уже в outbox, успевает разойтись
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        wakeUps.release();
+        try {
+            relay.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try {
+                relayPending();
+                wakeUps.acquire();
+                linger();
+                wakeUps.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка рассылки outbox ленты, повтор через {} мс", retryIntervalMs, e);
+                sleepBeforeRetry();
+            }
+        }
+        try {
+            relayPending();
+        } catch (RuntimeException e) {
+            log.error("Outbox ленты не разослан до конца при остановке, остаток разберётся при старте", e);
+        }
+    }
+
+    // Добираем пачку: ждём следующих событий, пока их меньше batch-size и не истёк flush-interval-ms
+    private void linger() throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        long remaining;
+        while (running && pending.get() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+            wakeUps.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Вызывается после коммита запроса: ошибка рассылки не должна превращать успешное действие в ошибку,
+    // остаток разберёт фоновый поток
+    private void relayInline(int queued) {
+        if (mode == Mode.ASYNC) {
+            log.warn("В outbox ленты {} неразосланных событий, запрос разбирает его сам", queued);
+        }
+        try {
+            relayPending();
+        } catch (RuntimeException e) {
+            log.error("Ошибка рассылки outbox ленты в потоке запроса, остаток разошлёт фоновый поток", e);
+            wakeUps.release();
+        }
+    }
+
+    private void notifySubscribers(List<FeedEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (FeedEventSubscriber subscriber : subscribers) {
+            try {
+                subscriber.onEvents(batch);
+            } catch (RuntimeException e) {
+                // Ошибка одного подписчика не должна задерживать ленты и остальных подписчиков
+                log.error("Подписчик {} не обработал {} событий ленты",
+                        subscriber.getClass().getSimpleName(), batch.size(), e);
+            }
+        }
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(retryIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
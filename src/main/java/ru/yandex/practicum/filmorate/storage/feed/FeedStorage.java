@@ -7,8 +7,30 @@ public interface FeedStorage {
 
     FeedEvent createEvent(FeedEvent event);
 
+    // Самые старые события outbox, ещё не разложенные по лентам
+    List<FeedEvent> findOutbox(int limit);
+
+    // Раскладывает события по лентам подписчиков и удаляет их из outbox
+    void publishOutbox(List<FeedEvent> events);
+
     List<FeedEvent> getUserFeed(Integer userId);
 
+    // Страница собственных событий пользователя: не больше limit последних событий с event_id меньше before
+    // (до самых новых, если before == null), в хронологическом порядке
+    List<FeedEvent> getUserFeed(Integer userId, Integer before, int limit);
+
+    // Лента активности друзей: не больше limit последних событий, от новых к старым
+    List<FeedEvent> getTimeline(Integer userId, int limit);
+
+    // Пользователь перестал следить за автором: события автора убираются из его ленты
+    void removeFromTimeline(Integer userId, Integer authorId);
+
+    // Авторы, чьи события подмешиваются при чтении ленты, а не раскладываются подписчикам; возвращает их число
+    int loadCelebrities();
+
+    // Оставляет в каждой ленте только последние события, возвращает число удалённых строк
+    int trimTimelines();
+
     void deleteEventsByUserId(Integer userId);
 
     void deleteEventsByEntityId(Integer entityId, FeedEvent.EventType eventType);
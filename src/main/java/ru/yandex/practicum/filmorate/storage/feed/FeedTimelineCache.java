@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ленты активности друзей для активно читающих пользователей: кольцевой буфер последних событий на пользователя
+ * с вытеснением давно не читавших (LRU). Новые события дописываются в буферы подписчиков при записи,
+ * поэтому чтение горячей ленты не обращается к feed_timeline.
+ * Здесь же помнятся «знаменитости» — авторы, чьи события не раскладываются подписчикам, а подмешиваются при чтении.
+ */
+@Component
+public class FeedTimelineCache {
+
+    // Длина ленты: столько последних событий хранится и в буфере, и в feed_timeline после подрезки
+    public static final int TIMELINE_SIZE = 100;
+    static final int CAPACITY = 10_000;
+
+    private final int capacity;
+    private final Map<Integer, Ring> rings;
+    private final Set<Integer> celebrities = ConcurrentHashMap.newKeySet();
+    private final AtomicLong deliveries = new AtomicLong();
+
+    public FeedTimelineCache() {
+        this(CAPACITY);
+    }
+
+    FeedTimelineCache(int capacity) {
+        this.capacity = capacity;
+        this.rings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Ring> eldest) {
+                return size() > FeedTimelineCache.this.capacity;
+            }
+        };
+    }
+
+    // События ленты от новых к старым; пусто, если лента пользователя не в памяти
+    public synchronized Optional<List<FeedEvent>> get(int userId) {
+        Ring ring = rings.get(userId);
+        return ring == null ? Optional.empty() : Optional.of(ring.newestFirst());
+    }
+
+    // Снимок счётчика доставок берётся до чтения из базы: если за это время пришли события, ленту не кладём
+    public long stamp() {
+        return deliveries.get();
+    }
+
+    // events — от новых к старым, как их отдаёт база
+    public synchronized void put(int userId, List<FeedEvent> events, long stamp) {
+        if (deliveries.get() != stamp) {
+            return;
+        }
+        Ring ring = new Ring();
+        for (int i = Math.min(events.size(), TIMELINE_SIZE) - 1; i >= 0; i--) {
+            ring.push(events.get(i));
+        }
+        rings.put(userId, ring);
+    }
+
+    // Дописывает событие в буферы тех подписчиков, чьи ленты сейчас в памяти
+    public synchronized void deliver(Collection<Integer> followers, FeedEvent event) {
+        deliveries.incrementAndGet();
+        for (Integer followerId : followers) {
+            Ring ring = rings.get(followerId);
+            // Лента могла быть прочитана из базы уже после фиксации события — тогда оно в ней есть
+            if (ring != null && !ring.contains(event.getEventId())) {
+                ring.add(event);
+            }
+        }
+    }
+
+    public synchronized void invalidate(Collection<Integer> userIds) {
+        deliveries.incrementAndGet();
+        userIds.forEach(rings::remove);
+    }
+
+    // Пользователь удалён: убираем его ленту и его события из чужих лент
+    public synchronized void removeUser(int userId) {
+        invalidate(List.of(userId));
+        rings.values().forEach(ring -> ring.removeAuthor(userId));
+        celebrities.remove(userId);
+    }
+
+    public synchronized void clear() {
+        deliveries.incrementAndGet();
+        rings.clear();
+    }
+
+    public void markCelebrity(int userId, boolean celebrity) {
+        if (celebrity) {
+            celebrities.add(userId);
+        } else {
+            celebrities.remove(userId);
+        }
+    }
+
+    public void setCelebrities(Collection<Integer> userIds) {
+        celebrities.clear();
+        celebrities.addAll(userIds);
+    }
+
+    public boolean isCelebrity(int userId) {
+        return celebrities.contains(userId);
+    }
+
+    public boolean hasCelebrities() {
+        return !celebrities.isEmpty();
+    }
+
+    // Кольцевой буфер фиксированной длины в порядке event_id: новое событие затирает самое старое
+    private static final class Ring {
+        private final FeedEvent[] events = new FeedEvent[TIMELINE_SIZE];
+        private int head;
+        private int size;
+
+        // События разных транзакций коммитятся и доставляются не в порядке id: запоздавшее встаёт на своё место,
+        // а в полном буфере событие старше всех отбрасывается — в базе его тоже срежет подрезка
+        void add(FeedEvent event) {
+            FeedEvent newest = size == 0 ? null : events[(head - 1 + events.length) % events.length];
+            if (newest == null || event.getEventId() > newest.getEventId()) {
+                push(event);
+                return;
+            }
+            List<FeedEvent> ordered = newestFirst();
+            int position = 0;
+            while (position < ordered.size() && ordered.get(position).getEventId() > event.getEventId()) {
+                position++;
+            }
+            if (position == events.length) {
+                return;
+            }
+            ordered.add(position, event);
+            refill(ordered);
+        }
+
+        void push(FeedEvent event) {
+            events[head] = event;
+            head = (head + 1) % events.length;
+            size = Math.min(size + 1, events.length);
+        }
+
+        boolean contains(Integer eventId) {
+            for (int i = 0; i < size; i++) {
+                if (eventId.equals(events[i].getEventId())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<FeedEvent> newestFirst() {
+            List<FeedEvent> result = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                result.add(events[(head - i + events.length) % events.length]);
+            }
+            return result;
+        }
+
+        void removeAuthor(int userId) {
+            List<FeedEvent> kept = newestFirst();
+            kept.removeIf(event -> event.getUserId() == userId);
+            refill(kept);
+        }
+
+        // newestFirst — события от новых к старым; в буфер попадают последние events.length из них
+        private void refill(List<FeedEvent> newestFirst) {
+            Arrays.fill(events, null);
+            head = 0;
+            size = 0;
+            for (int i = Math.min(newestFirst.size(), events.length) - 1; i >= 0; i--) {
+                push(newestFirst.get(i));
+            }
+        }
+    }
+}
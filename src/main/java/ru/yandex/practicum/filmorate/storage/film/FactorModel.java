@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Векторы пользователей и фильмов после матричной факторизации, индексированные по id.
+ * Файл модели — заголовок и два массива float подряд; он отображается в память,
+ * поэтому загрузка не копирует векторы в кучу, а чтение идёт прямо из страниц файла.
+ * В заголовке хранится отпечаток лайков, по которым модель обучена, — по нему видно, что файл устарел.
+ */
+final class FactorModel {
+
+    // "ALS2" — отличает файл модели от случайного файла с тем же именем и от файлов без отпечатка
+    private static final int MAGIC = 0x414C5332;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + Long.BYTES;
+    private static final Comparator<Scored> BY_SCORE =
+            Comparator.comparingDouble(Scored::score).thenComparing(Scored::filmId, Comparator.reverseOrder());
+
+    private final int factors;
+    private final long fingerprint;
+    private final int users;
+    private final int films;
+    private final FloatBuffer userFactors;
+    private final FloatBuffer filmFactors;
+
+    FactorModel(int factors, long fingerprint, float[] userFactors, float[] filmFactors) {
+        this(factors, fingerprint, userFactors.length / Math.max(factors, 1),
+                filmFactors.length / Math.max(factors, 1),
+                FloatBuffer.wrap(userFactors), FloatBuffer.wrap(filmFactors));
+    }
+
+    private FactorModel(int factors, long fingerprint, int users, int films,
+                        FloatBuffer userFactors, FloatBuffer filmFactors) {
+        this.factors = factors;
+        this.fingerprint = fingerprint;
+        this.users = users;
+        this.films = films;
+        this.userFactors = userFactors;
+        this.filmFactors = filmFactors;
+    }
+
+    static FactorModel empty() {
+        return new FactorModel(0, 0, new float[0], new float[0]);
+    }
+
+    static FactorModel map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Буфер отображения адресуется int, поэтому файл больше 2 ГБ не читаем
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Файл " + file + " не является моделью факторизации");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Файл " + file + " не является моделью факторизации");
+            }
+            int factors = buffer.getInt(Integer.BYTES);
+            int users = buffer.getInt(2 * Integer.BYTES);
+            int films = buffer.getInt(3 * Integer.BYTES);
+            long fingerprint = buffer.getLong(4 * Integer.BYTES);
+            // В long, чтобы испорченный заголовок не дал переполнение, случайно совпавшее с размером файла
+            long userBytes = (long) users * factors * Float.BYTES;
+            long filmBytes = (long) films * factors * Float.BYTES;
+            if (factors < 0 || users < 0 || films < 0 || channel.size() != HEADER_BYTES + userBytes + filmBytes) {
+                throw new IOException("Размер файла " + file + " не совпадает с заголовком модели");
+            }
+            return new FactorModel(factors, fingerprint, users, films,
+                    buffer.slice(HEADER_BYTES, (int) userBytes).asFloatBuffer(),
+                    buffer.slice(HEADER_BYTES + (int) userBytes, (int) filmBytes).asFloatBuffer());
+        }
+    }
+
+    // Пишем во временный файл и подменяем им прежний, чтобы читатель не увидел модель наполовину
+    void write(Path file) throws IOException {
+        long size = HEADER_BYTES + ((long) users + films) * factors * Float.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Модель факторизации занимает " + size + " байт и не помещается в файл модели");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(factors).putInt(users).putInt(films).putLong(fingerprint);
+        buffer.asFloatBuffer().put(userFactors.duplicate().clear()).put(filmFactors.duplicate().clear());
+        buffer.clear();
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    int factors() {
+        return factors;
+    }
+
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    float userFactor(int userId, int factor) {
+        return userFactors.get(userId * factors + factor);
+    }
+
+    float filmFactor(int filmId, int factor) {
+        return filmFactors.get(filmId * factors + factor);
+    }
+
+    // Фильмы с наибольшим скалярным произведением на вектор пользователя, кроме уже лайкнутых (отсортированы)
+    Map<Integer, Double> topFilms(int userId, int[] excludedFilms, int limit) {
+        if (userId < 0 || userId >= users || limit <= 0) {
+            return Map.of();
+        }
+        float[] user = new float[factors];
+        userFactors.get(userId * factors, user);
+
+        PriorityQueue<Scored> top = new PriorityQueue<>(limit + 1, BY_SCORE);
+        for (int filmId = 0; filmId < films; filmId++) {
+            float score = 0;
+            for (int i = 0, offset = filmId * factors; i < factors; i++) {
+                score += user[i] * filmFactors.get(offset + i);
+            }
+            // Нулевой и отрицательный прогноз — у модели нет оснований рекомендовать фильм
+            if (score <= 0 || top.size() == limit && score <= top.peek().score()) {
+                continue;
+            }
+            if (Arrays.binarySearch(excludedFilms, filmId) >= 0) {
+                continue;
+            }
+            top.add(new Scored(filmId, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(BY_SCORE.reversed());
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        ranked.forEach(scored -> result.put(scored.filmId(), (double) scored.score()));
+        return result;
+    }
+
+    private record Scored(int filmId, float score) {
+    }
+}
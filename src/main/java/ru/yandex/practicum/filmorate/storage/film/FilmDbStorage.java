@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Primary;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -15,13 +16,18 @@ import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
+import ru.yandex.practicum.filmorate.storage.IdPresenceCache;
 
+import java.sql.Array;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -30,25 +36,67 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
 
+    // Фильм целиком за один оператор: MPA через JOIN, жанры, режиссёры и лайки — коррелированными
+    // подзапросами-массивами, которые обслуживаются первичными ключами film_genres, film_director и likes.
+    // Краткое представление обходится без массива лайков: их число уже лежит в films.like_count
+    private static final String FILM_SUMMARY_COLUMNS = """
+            f.*,
+            m.id AS mpa_id,
+            m.name AS mpa_name,
+            m.description AS mpa_description,
+            ARRAY(SELECT fg.genre_id FROM film_genres fg
+                  WHERE fg.film_id = f.id ORDER BY fg.genre_id) AS genre_ids,
+            ARRAY(SELECT g.name FROM film_genres fg JOIN genres g ON g.id = fg.genre_id
+                  WHERE fg.film_id = f.id ORDER BY fg.genre_id) AS genre_names,
+            ARRAY(SELECT fd.director_id FROM film_director fd
+                  WHERE fd.film_id = f.id ORDER BY fd.director_id) AS director_ids,
+            ARRAY(SELECT d.name FROM film_director fd JOIN director d ON d.id = fd.director_id
+                  WHERE fd.film_id = f.id ORDER BY fd.director_id) AS director_names
+            """;
+    private static final String FILM_COLUMNS = FILM_SUMMARY_COLUMNS.stripTrailing() + """
+            ,
+            ARRAY(SELECT l.user_id FROM likes l WHERE l.film_id = f.id ORDER BY l.user_id) AS like_user_ids
+            """;
+
+    private static final int STREAM_FETCH_SIZE = 256;
+
     private final JdbcTemplate jdbcTemplate;
+    private final IdBatchLoader idBatchLoader;
+    private final IdPresenceCache knownIds = new IdPresenceCache();
 
     @Override
     @Transactional(readOnly = true)
     public List<Film> findAll() {
-        String filmsSql = "SELECT f.*, m.id as mpa_id, m.name as mpa_name, m.description as mpa_description " +
+        String filmsSql = "SELECT " + FILM_COLUMNS +
                           "FROM films f " +
                           "LEFT JOIN mpa_ratings m ON f.mpa_id = m.id " +
                           "ORDER BY f.id";
 
-        List<Film> films = jdbcTemplate.query(filmsSql, this::mapRowToFilm);
-
-        if (!films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadLikesForFilms(films);
-            loadDirectorsForFilms(films);
-        }
+        return jdbcTemplate.query(filmsSql, this::mapRowToFilm);
+    }
 
-        return films;
+    @Override
+    @Transactional(readOnly = true)
+    public void streamFilms(int afterId, Integer limit, boolean withLikes, Consumer<Film> consumer) {
+        // Keyset-пагинация по первичному ключу: без OFFSET и без сборки всего списка в памяти
+        String sql = "SELECT " + (withLikes ? FILM_COLUMNS : FILM_SUMMARY_COLUMNS) +
+                     "FROM films f " +
+                     "LEFT JOIN mpa_ratings m ON f.mpa_id = m.id " +
+                     "WHERE f.id > ? " +
+                     "ORDER BY f.id" +
+                     (limit != null ? " LIMIT ?" : "");
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            stmt.setInt(1, afterId);
+            if (limit != null) {
+                stmt.setInt(2, limit);
+            }
+            return stmt;
+        }, rs -> {
+            consumer.accept(withLikes ? mapRowToFilm(rs, rs.getRow()) : mapRowToFilmSummary(rs, rs.getRow()));
+        });
     }
 
     @Override
@@ -75,6 +123,7 @@ public class FilmDbStorage implements FilmStorage {
 
             Integer filmId = Objects.requireNonNull(keyHolder.getKey()).intValue();
             film.setId(filmId);
+            knownIds.add(filmId);
 
             // Сохраняем жанры с сохранением порядка
             saveGenresInTransaction(filmId, film.getGenres());
@@ -125,25 +174,60 @@ public class FilmDbStorage implements FilmStorage {
     @Override
     @Transactional(readOnly = true)
     public Optional<Film> findById(Integer id) {
-        String filmsSql = "SELECT f.*, m.id as mpa_id, m.name as mpa_name, m.description as mpa_description " +
+        String filmsSql = "SELECT " + FILM_COLUMNS +
                           "FROM films f " +
                           "LEFT JOIN mpa_ratings m ON f.mpa_id = m.id " +
                           "WHERE f.id = ?";
 
         try {
-            Film film = jdbcTemplate.queryForObject(filmsSql, this::mapRowToFilm, id);
-            if (film != null) {
-                loadAdditionalDataForSingleFilm(film);
-            }
-            return Optional.ofNullable(film);
+            return Optional.ofNullable(jdbcTemplate.queryForObject(filmsSql, this::mapRowToFilm, id));
         } catch (EmptyResultDataAccessException e) {
             return Optional.empty();
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> findByIds(List<Integer> ids, boolean withLikes) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String sql = String.format("""
+                SELECT %s
+                FROM films f
+                LEFT JOIN mpa_ratings m ON f.mpa_id = m.id
+                WHERE f.id %s
+                """, withLikes ? FILM_COLUMNS : FILM_SUMMARY_COLUMNS, IdBatchLoader.IDS);
+
+        List<Film> films = idBatchLoader.query(sql, ids, withLikes ? this::mapRowToFilm : this::mapRowToFilmSummary);
+
+        // Возвращаем фильмы в том же порядке, в котором были переданы идентификаторы
+        Map<Integer, Film> filmsById = films.stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Проверки существования для валидации: без загрузки жанров, режиссёров и лайков
+    @Override
+    public boolean existsById(Integer id) {
+        return knownIds.exists(id, filmId -> Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?)", Boolean.class, filmId)));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Integer> ids) {
+        return knownIds.existsAll(ids, unknown -> idBatchLoader.query(
+                "SELECT id FROM films WHERE id " + IdBatchLoader.IDS, unknown, (rs, rowNum) -> rs.getInt("id")));
+    }
+
     @Override
     @Transactional
     public void delete(Integer id) {
+        knownIds.evict(id);
         try {
             // Удаление film_genres произойдет каскадно из-за ON DELETE CASCADE
             String sql = "DELETE FROM films WHERE id = ?";
@@ -164,8 +248,23 @@ public class FilmDbStorage implements FilmStorage {
     @Transactional
     public Film addLike(Integer filmId, Integer userId) {
         try {
-            String sql = "MERGE INTO likes (film_id, user_id) KEY(film_id, user_id) VALUES (?, ?)";
-            jdbcTemplate.update(sql, filmId, userId);
+            String sql = """
+                    INSERT INTO likes (film_id, user_id)
+                    SELECT ?, ?
+                    WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)
+                    """;
+            int inserted;
+            try {
+                inserted = jdbcTemplate.update(sql, filmId, userId, filmId, userId);
+            } catch (DuplicateKeyException e) {
+                // Такой же лайк вставлен параллельным запросом после нашей проверки NOT EXISTS — тоже no-op
+                inserted = 0;
+            }
+
+            // Счётчик меняем только если лайк действительно добавлен (повторный лайк — no-op)
+            if (inserted > 0) {
+                jdbcTemplate.update("UPDATE films SET like_count = like_count + 1 WHERE id = ?", filmId);
+            }
             log.info("Пользователь {} поставил лайк фильму {}", userId, filmId);
 
             return findById(filmId).orElseThrow(() ->
@@ -187,6 +286,8 @@ public class FilmDbStorage implements FilmStorage {
                 throw new RuntimeException("Лайк не найден для фильма " + filmId + " и пользователя " + userId);
             }
 
+            jdbcTemplate.update("UPDATE films SET like_count = like_count - 1 WHERE id = ?", filmId);
+
             log.info("Пользователь {} удалил лайк у фильма {}", userId, filmId);
             return findById(filmId).orElseThrow(() ->
                     new RuntimeException("Фильм с ID " + filmId + " не найден после удаления лайка"));
@@ -201,22 +302,9 @@ public class FilmDbStorage implements FilmStorage {
     public List<Film> searchFilms(String query, boolean searchByDirector, boolean searchByTitle) {
         String likeQuery = "%" + query.toLowerCase() + "%";
 
-        StringBuilder sql = new StringBuilder("""
-        SELECT DISTINCT
-            f.id,
-            f.name,
-            f.description,
-            f.release_date,
-            f.duration,
-            m.id AS mpa_id,
-            m.name AS mpa_name,
-            m.description AS mpa_description,
-            COUNT(l.user_id) AS like_count
+        StringBuilder sql = new StringBuilder("SELECT " + FILM_COLUMNS + """
         FROM films f
         LEFT JOIN mpa_ratings m ON f.mpa_id = m.id
-        LEFT JOIN likes l ON f.id = l.film_id
-        LEFT JOIN film_director fd ON f.id = fd.film_id
-        LEFT JOIN director d ON fd.director_id = d.id
         """);
 
         List<Object> params = new ArrayList<>();
@@ -228,7 +316,10 @@ public class FilmDbStorage implements FilmStorage {
         }
 
         if (searchByDirector) {
-            conditions.add("LOWER(d.name) LIKE ?");
+            conditions.add("""
+                    EXISTS (SELECT 1 FROM film_director fd
+                            JOIN director d ON fd.director_id = d.id
+                            WHERE fd.film_id = f.id AND LOWER(d.name) LIKE ?)""");
             params.add(likeQuery);
         }
 
@@ -237,71 +328,46 @@ public class FilmDbStorage implements FilmStorage {
             sql.append(String.join(" OR ", conditions));
         }
 
-        sql.append("""
-        GROUP BY
-            f.id,
-            m.id,
-            m.name,
-            m.description
-        ORDER BY
-            COUNT(l.user_id) DESC,
-            f.id
-        """);
-
-        List<Film> films = jdbcTemplate.query(sql.toString(), this::mapRowToFilm, params.toArray());
+        sql.append(" ORDER BY f.like_count DESC, f.id");
 
-        if (!films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadLikesForFilms(films);
-            loadDirectorsForFilms(films);
-        }
-
-        return films;
+        return jdbcTemplate.query(sql.toString(), this::mapRowToFilm, params.toArray());
     }
 
-    // Оптимизированная версия
     @Override
     @Transactional(readOnly = true)
     public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
-        StringBuilder sql = new StringBuilder("""
-            SELECT
-                f.*,
-                m.id as mpa_id,
-                m.name as mpa_name,
-                m.description as mpa_description,
-                COUNT(l.user_id) as like_count
-            FROM films f
-            LEFT JOIN mpa_ratings m ON f.mpa_id = m.id
-            LEFT JOIN likes l ON f.id = l.film_id
-            """);
-
         List<Object> params = new ArrayList<>();
-
         if (genreId != null) {
-            sql.append(" WHERE EXISTS (SELECT 1 FROM film_genres fg WHERE fg.film_id = f.id AND fg.genre_id = ?)");
             params.add(genreId);
         }
-
         if (year != null) {
-            sql.append(genreId != null ? " AND" : " WHERE");
-            sql.append(" EXTRACT(YEAR FROM f.release_date) = ?");
             params.add(year);
         }
-
-        sql.append(" GROUP BY f.id, m.id, m.name, m.description");
-        sql.append(" ORDER BY COUNT(l.user_id) DESC, f.id");
-        sql.append(" LIMIT ?");
         params.add(count);
 
-        List<Film> films = jdbcTemplate.query(sql.toString(), this::mapRowToFilm, params.toArray());
+        return jdbcTemplate.query(popularFilmsSql(genreId, year), this::mapRowToFilm, params.toArray());
+    }
+
+    // Фильтры по жанру и году сформулированы так, чтобы их обслуживали индексы
+    // idx_film_genres_genre (genre_id, film_id) и idx_films_year_popularity (release_year, like_count, id)
+    static String popularFilmsSql(Integer genreId, Integer year) {
+        StringBuilder sql = new StringBuilder("SELECT " + FILM_COLUMNS + """
+            FROM films f
+            """);
 
-        if (!films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadLikesForFilms(films);
-            loadDirectorsForFilms(films);
+        if (genreId != null) {
+            sql.append(" JOIN film_genres fg ON fg.film_id = f.id AND fg.genre_id = ?");
         }
 
-        return films;
+        sql.append(" LEFT JOIN mpa_ratings m ON f.mpa_id = m.id");
+
+        if (year != null) {
+            sql.append(" WHERE f.release_year = ?");
+        }
+
+        sql.append(" ORDER BY f.like_count DESC, f.id");
+        sql.append(" LIMIT ?");
+        return sql.toString();
     }
 
     @Override
@@ -328,23 +394,36 @@ public class FilmDbStorage implements FilmStorage {
     @Transactional(readOnly = true)
     public List<Film> getDirectorsFilms(Integer directorId) {
         String sql = """
-                SELECT f.*, m.id AS mpa_id, m.name AS mpa_name, m.description AS mpa_description
+                SELECT %s
                 FROM films AS f
                 LEFT JOIN film_director AS fd ON f.id = fd.film_id
                 LEFT JOIN mpa_ratings m ON f.mpa_id = m.id
                 WHERE fd.director_id = ?
-                """;
-        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, directorId);
+                """.formatted(FILM_COLUMNS);
+        return jdbcTemplate.query(sql, this::mapRowToFilm, directorId);
+    }
 
-        if (!films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadLikesForFilms(films);
-            loadDirectorsForFilms(films);
+    private Film mapRowToFilm(ResultSet rs, int rowNum) throws SQLException {
+        Film film = mapFilmColumns(rs);
+
+        // Лайки популярного фильма — десятки тысяч id, поэтому складываем их в массив int без хеш-таблицы
+        Object[] likeUserIds = array(rs, "like_user_ids");
+        int[] likes = new int[likeUserIds.length];
+        for (int i = 0; i < likes.length; i++) {
+            likes[i] = (Integer) likeUserIds[i];
         }
-        return films;
+        film.setLikes(IntSet.wrap(likes));
+        return film;
     }
 
-    private Film mapRowToFilm(ResultSet rs, int rowNum) throws SQLException {
+    private Film mapRowToFilmSummary(ResultSet rs, int rowNum) throws SQLException {
+        Film film = mapFilmColumns(rs);
+        film.setLikes(null);
+        film.setLikeCount(rs.getInt("like_count"));
+        return film;
+    }
+
+    private Film mapFilmColumns(ResultSet rs) throws SQLException {
         Film film = new Film();
         film.setId(rs.getInt("id"));
         film.setName(rs.getString("name"));
@@ -358,180 +437,40 @@ public class FilmDbStorage implements FilmStorage {
         mpa.setDescription(rs.getString("mpa_description"));
         film.setMpa(mpa);
 
-        film.setGenres(new LinkedHashSet<>()); // Используем LinkedHashSet для сохранения порядка
-        film.setLikes(new HashSet<>());
-        film.setDirectors(new LinkedHashSet<>());
-
-        return film;
-    }
-
-    private void loadAdditionalDataForSingleFilm(Film film) {
-        loadGenresForSingleFilm(film);
-        loadLikesForSingleFilm(film);
-        loadDirectorsForSingleFilm(film);
-    }
-
-    private void loadGenresForFilms(List<Film> films) {
-        if (films.isEmpty()) {
-            return;
+        // Используем LinkedHashSet для сохранения порядка
+        Object[] genreIds = array(rs, "genre_ids");
+        Object[] genreNames = array(rs, "genre_names");
+        LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+        for (int i = 0; i < genreIds.length; i++) {
+            genres.add(new Genre((Integer) genreIds[i], (String) genreNames[i]));
         }
+        film.setGenres(genres);
 
-        List<Integer> filmIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toList());
-
-        String placeholders = filmIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(", "));
-
-        String sql = String.format("""
-                SELECT fg.film_id, g.id as genre_id, g.name as genre_name
-                FROM film_genres fg
-                JOIN genres g ON fg.genre_id = g.id
-                WHERE fg.film_id IN (%s)
-                ORDER BY fg.film_id, fg.genre_id  -- Сортировка по ID фильма и ID жанра в порядке вставки
-                """, placeholders);
-
-        Map<Integer, LinkedHashSet<Genre>> genresByFilmId = jdbcTemplate.query(sql, filmIds.toArray(), rs -> {
-            Map<Integer, LinkedHashSet<Genre>> result = new HashMap<>();
-            while (rs.next()) {
-                Integer filmId = rs.getInt("film_id");
-                Genre genre = new Genre(
-                        rs.getInt("genre_id"),
-                        rs.getString("genre_name")
-                );
-                result.computeIfAbsent(filmId, k -> new LinkedHashSet<>()).add(genre);
-            }
-            return result;
-        });
-
-        for (Film film : films) {
-            LinkedHashSet<Genre> genres = genresByFilmId.getOrDefault(film.getId(), new LinkedHashSet<>());
-            film.setGenres(genres);
+        Object[] directorIds = array(rs, "director_ids");
+        Object[] directorNames = array(rs, "director_names");
+        LinkedHashSet<Director> directors = new LinkedHashSet<>();
+        for (int i = 0; i < directorIds.length; i++) {
+            directors.add(Director.builder()
+                    .id((Integer) directorIds[i])
+                    .name((String) directorNames[i])
+                    .build());
         }
+        film.setDirectors(directors);
+        return film;
     }
 
-    private void loadLikesForFilms(List<Film> films) {
-        if (films.isEmpty()) {
-            return;
-        }
-
-        List<Integer> filmIds = films.stream()
-                .map(Film::getId)
-                .collect(Collectors.toList());
-
-        String placeholders = filmIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(", "));
-
-        String sql = String.format("""
-                SELECT film_id, user_id
-                FROM likes
-                WHERE film_id IN (%s)
-                ORDER BY film_id
-                """, placeholders);
-
-        Map<Integer, List<Integer>> likesByFilmId = jdbcTemplate.query(sql, filmIds.toArray(), rs -> {
-            Map<Integer, List<Integer>> result = new HashMap<>();
-            while (rs.next()) {
-                Integer filmId = rs.getInt("film_id");
-                Integer userId = rs.getInt("user_id");
-                result.computeIfAbsent(filmId, k -> new ArrayList<>()).add(userId);
-            }
-            return result;
-        });
-
-        for (Film film : films) {
-            List<Integer> likes = likesByFilmId.getOrDefault(film.getId(), new ArrayList<>());
-            film.setLikes(new HashSet<>(likes));
+    private static Object[] array(ResultSet rs, String column) throws SQLException {
+        Array array = rs.getArray(column);
+        if (array == null) {
+            return new Object[0];
         }
-    }
-
-    private void loadDirectorsForFilms(List<Film> films) {
-        if (films.isEmpty())
-            return;
-
-        List<Integer> filmIds = films.stream()
-                .map(Film::getId)
-                .toList();
-
-        String placeholders = filmIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(", "));
-
-        String sql = String.format("""
-                SELECT fd.film_id, dir.id, dir.name
-                FROM director AS dir
-                JOIN film_director AS fd ON dir.id = fd.director_id
-                WHERE fd.film_id IN (%s)
-                ORDER BY fd.film_id, fd.director_id
-                """, placeholders);
-
-        Map<Integer, LinkedHashSet<Director>> directorsByFilms = jdbcTemplate.query(sql, filmIds.toArray(), rs -> {
-            Map<Integer, LinkedHashSet<Director>> result = new HashMap<>();
-            while (rs.next()) {
-                Integer filmId = rs.getInt("film_id");
-                result.computeIfAbsent(filmId, k -> new LinkedHashSet<>())
-                        .add(Director.builder()
-                                .id(rs.getInt("id"))
-                                .name(rs.getString("name"))
-                                .build());
-            }
-            return result;
-        });
-
-        for (Film film : films) {
-            LinkedHashSet<Director> directors = directorsByFilms.getOrDefault(film.getId(), new LinkedHashSet<>());
-            film.setDirectors(directors);
+        try {
+            return (Object[]) array.getArray();
+        } finally {
+            array.free();
         }
     }
 
-    private void loadGenresForSingleFilm(Film film) {
-        String sql = "SELECT g.id, g.name " +
-                     "FROM genres g " +
-                     "JOIN film_genres fg ON g.id = fg.genre_id " +
-                     "WHERE fg.film_id = ? " +
-                     "ORDER BY fg.genre_id";  // Сохраняем порядок вставки
-
-        LinkedHashSet<Genre> genres = jdbcTemplate.query(sql, rs -> {
-            LinkedHashSet<Genre> result = new LinkedHashSet<>();
-            while (rs.next()) {
-                Genre genre = new Genre();
-                genre.setId(rs.getInt("id"));
-                genre.setName(rs.getString("name"));
-                result.add(genre);
-            }
-            return result;
-        }, film.getId());
-
-        film.setGenres(genres);
-    }
-
-    private void loadLikesForSingleFilm(Film film) {
-        String sql = "SELECT user_id FROM likes WHERE film_id = ?";
-        List<Integer> likes = jdbcTemplate.queryForList(sql, Integer.class, film.getId());
-        film.setLikes(new HashSet<>(likes));
-    }
-
-    private void loadDirectorsForSingleFilm(Film film) {
-        String sql = """
-                SELECT dir.id, dir.name
-                FROM director AS dir
-                JOIN film_director AS fd ON fd.director_id = dir.id
-                WHERE fd.film_id = ?
-                """;
-        LinkedHashSet<Director> directors = jdbcTemplate.query(sql, rs -> {
-            LinkedHashSet<Director> result = new LinkedHashSet<>();
-            while (rs.next()) {
-                result.add(Director.builder()
-                        .id(rs.getInt("id"))
-                        .name(rs.getString("name")).build());
-            }
-            return result;
-        }, film.getId());
-        film.setDirectors(directors);
-    }
-
     private void saveGenresInTransaction(Integer filmId, Set<Genre> genres) {
         if (genres != null && !genres.isEmpty()) {
             String insertSql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
@@ -578,72 +517,17 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public List<Film> getCommonFilms(Integer userId, Integer friendId) {
-        String sql = """
-            SELECT
-                f.*,
-                m.id as mpa_id,
-                m.name as mpa_name,
-                m.description as mpa_description,
-                COUNT(l.user_id) as like_count
-            FROM films f
-            LEFT JOIN mpa_ratings m ON f.mpa_id = m.id
-            LEFT JOIN likes l ON f.id = l.film_id
-                WHERE f.id IN(
-                -- Фильмы, которые лайкнул первый пользователь
-                SELECT film_id FROM likes WHERE user_id = ?
-                INTERSECT
-                -- Фильмы, которые лайкнул второй пользователь
-                SELECT film_id FROM likes WHERE user_id = ?
-            )
-            GROUP BY f.id, m.id, m.name, m.description
-            ORDER BY COUNT(l.user_id) DESC, f.id
-            """;
-
-        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, userId, friendId);
-
-        if (!films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadLikesForFilms(films);
-            loadDirectorsForFilms(films);
-        }
-
-        return films;
-    }
-
-    @Override
-    @Transactional(readOnly = true)
-    public List<Film> getRecommendedFilms(Integer userId, Integer similarUserId) {
+    @Transactional
+    public int reconcileLikeCounts() {
         String sql = """
-                SELECT DISTINCT
-                    f.*,
-                    m.id as mpa_id,
-                    m.name as mpa_name,
-                    m.description as mpa_description,
-                    COUNT(l.user_id) as like_count
-                FROM films f
-                LEFT JOIN mpa_ratings m ON f.mpa_id = m.id
-                LEFT JOIN likes l ON f.id = l.film_id
-                WHERE f.id IN (
-                    -- Фильмы, которые понравились похожему пользователю
-                    SELECT film_id FROM likes WHERE user_id = ?
-                    EXCEPT
-                    -- Фильмы, которые уже понравились целевому пользователю
-                    SELECT film_id FROM likes WHERE user_id = ?
-                )
-                GROUP BY f.id, m.id, m.name, m.description
-                ORDER BY COUNT(l.user_id) DESC, f.id
+                UPDATE films f
+                SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+                WHERE like_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
                 """;
-
-        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, similarUserId, userId);
-
-        if (!films.isEmpty()) {
-            loadGenresForFilms(films);
-            loadLikesForFilms(films);
-            loadDirectorsForFilms(films);
+        int fixed = jdbcTemplate.update(sql);
+        if (fixed > 0) {
+            log.warn("Счётчики лайков пересчитаны для {} фильмов", fixed);
         }
-
-        return films;
+        return fixed;
     }
-}
\ No newline at end of file
+}
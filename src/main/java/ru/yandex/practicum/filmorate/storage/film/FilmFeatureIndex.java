@@ -0,0 +1,338 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Признаки фильмов для контентных рекомендаций: жанры, режиссёры и рейтинг MPA.
+ * Вектор фильма — его признаки с весом IDF, профиль пользователя — сумма нормированных векторов лайкнутых фильмов.
+ * Обратный индекс «признак -> фильмы» даёт кандидатов: оцениваются только фильмы с общими с профилем признаками.
+ * Индекс хранится в массивах по номеру признака и id фильма и правится по одному фильму;
+ * IDF зависит от размера каталога, поэтому считается при запросе, а не хранится.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmFeatureIndex {
+
+    // Признак кодируется числом id * TYPES + тип, чтобы жанр 1 и режиссёр 1 не совпали
+    private static final int GENRE = 0;
+    private static final int DIRECTOR = 1;
+    private static final int MPA = 2;
+    private static final int TYPES = 3;
+    private static final int[] NO_FILMS = new int[0];
+    private static final Comparator<Scored> BY_SCORE =
+            Comparator.comparingDouble(Scored::score).thenComparing(Scored::filmId, Comparator.reverseOrder());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Признак -> номер в массивах; номер освободившегося признака не переиспользуется до rebuild
+    private final Map<Integer, Integer> slots = new HashMap<>();
+    // Номер признака -> отсортированные id фильмов с ним
+    private int[][] postings = new int[0][];
+    // Id фильма -> отсортированные номера его признаков; null — фильма нет в индексе
+    private int[][] featuresByFilm = new int[0][];
+    private int films;
+    private final AtomicLong version = new AtomicLong();
+
+    // До приёма запросов, чтобы фильм, изменённый во время сборки, не вернулся к старым признакам
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, Set<Integer>> features = new HashMap<>();
+        jdbcTemplate.query("SELECT id, mpa_id FROM films", rs -> {
+            Set<Integer> filmFeatures = features.computeIfAbsent(rs.getInt("id"), id -> new HashSet<>());
+            int mpaId = rs.getInt("mpa_id");
+            if (!rs.wasNull()) {
+                filmFeatures.add(feature(MPA, mpaId));
+            }
+        });
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            features.computeIfAbsent(rs.getInt("film_id"), id -> new HashSet<>())
+                    .add(feature(GENRE, rs.getInt("genre_id")));
+        });
+        jdbcTemplate.query("SELECT film_id, director_id FROM film_director", rs -> {
+            features.computeIfAbsent(rs.getInt("film_id"), id -> new HashSet<>())
+                    .add(feature(DIRECTOR, rs.getInt("director_id")));
+        });
+
+        lock.writeLock().lock();
+        try {
+            slots.clear();
+            postings = new int[0][];
+            Map<Integer, List<Integer>> filmsBySlot = new HashMap<>();
+            int maxFilmId = features.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+            featuresByFilm = new int[maxFilmId + 1][];
+            features.forEach((filmId, filmFeatures) -> {
+                int[] filmSlots = filmFeatures.stream().mapToInt(this::slot).sorted().toArray();
+                featuresByFilm[filmId] = filmSlots;
+                for (int slot : filmSlots) {
+                    filmsBySlot.computeIfAbsent(slot, key -> new ArrayList<>()).add(filmId);
+                }
+            });
+            postings = new int[slots.size()][];
+            for (int slot = 0; slot < postings.length; slot++) {
+                postings[slot] = filmsBySlot.get(slot).stream().mapToInt(Integer::intValue).sorted().toArray();
+            }
+            films = features.size();
+            version.incrementAndGet();
+            log.info("Индекс признаков фильмов построен, фильмов: {}, признаков: {}", films, slots.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexFilm(Film film) {
+        Set<Integer> filmFeatures = new HashSet<>();
+        if (film.getMpa() != null && film.getMpa().getId() != null) {
+            filmFeatures.add(feature(MPA, film.getMpa().getId()));
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                filmFeatures.add(feature(GENRE, genre.getId()));
+            }
+        }
+        if (film.getDirectors() != null) {
+            for (Director director : film.getDirectors()) {
+                filmFeatures.add(feature(DIRECTOR, director.getId()));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            int filmId = film.getId();
+            int[] previous = row(filmId);
+            int[] current = filmFeatures.stream().mapToInt(this::slot).sorted().toArray();
+            // Правка названия или описания признаки не меняет — кэшированные рекомендации остаются верными
+            if (previous != null && Arrays.equals(previous, current)) {
+                return;
+            }
+            if (previous == null) {
+                previous = NO_FILMS;
+                films++;
+            }
+            if (filmId >= featuresByFilm.length) {
+                featuresByFilm = Arrays.copyOf(featuresByFilm, Math.max(filmId + 1, featuresByFilm.length * 2));
+            }
+            for (int slot : previous) {
+                if (Arrays.binarySearch(current, slot) < 0) {
+                    postings[slot] = without(postings[slot], filmId);
+                }
+            }
+            for (int slot : current) {
+                if (Arrays.binarySearch(previous, slot) < 0) {
+                    postings[slot] = with(postings[slot], filmId);
+                }
+            }
+            featuresByFilm[filmId] = current;
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(Integer filmId) {
+        lock.writeLock().lock();
+        try {
+            int[] previous = row(filmId);
+            if (previous == null) {
+                return;
+            }
+            for (int slot : previous) {
+                postings[slot] = without(postings[slot], filmId);
+            }
+            featuresByFilm[filmId] = null;
+            films--;
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(Integer directorId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(feature(DIRECTOR, directorId));
+            if (slot == null || postings[slot].length == 0) {
+                return;
+            }
+            for (int filmId : postings[slot]) {
+                featuresByFilm[filmId] = without(featuresByFilm[filmId], slot);
+            }
+            postings[slot] = NO_FILMS;
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Меняется при каждом изменении признаков — по нему кэши узнают, что их результаты устарели
+    public long version() {
+        return version.get();
+    }
+
+    // Фильмы с наибольшим косинусом к профилю пользователя, кроме уже лайкнутых (likedFilms отсортированы)
+    public Map<Integer, Double> scoreCandidates(int[] likedFilms, int limit) {
+        lock.readLock().lock();
+        try {
+            return score(likedFilms, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Integer, Double> score(int[] likedFilms, int limit) {
+        // IDF по номеру признака считается при первом обращении; 0 — ещё не посчитан (у живого признака IDF > 0)
+        double[] idf = new double[postings.length];
+        double[] profile = new double[postings.length];
+        boolean empty = true;
+        for (int filmId : likedFilms) {
+            int[] filmSlots = row(filmId);
+            double norm = filmSlots == null ? 0 : norm(filmSlots, idf);
+            if (norm == 0) {
+                continue;
+            }
+            for (int slot : filmSlots) {
+                profile[slot] += idf(slot, idf) / norm;
+                empty = false;
+            }
+        }
+        if (empty || limit <= 0) {
+            return Map.of();
+        }
+
+        // Скалярные произведения копятся только для фильмов из постингов признаков профиля
+        double profileNorm = 0;
+        double[] dotProducts = new double[featuresByFilm.length];
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        for (int slot = 0; slot < profile.length; slot++) {
+            if (profile[slot] == 0) {
+                continue;
+            }
+            profileNorm += profile[slot] * profile[slot];
+            double contribution = profile[slot] * idf[slot];
+            for (int filmId : postings[slot]) {
+                if (dotProducts[filmId] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = filmId;
+                }
+                dotProducts[filmId] += contribution;
+            }
+        }
+
+        double scale = Math.sqrt(profileNorm);
+        PriorityQueue<Scored> top = new PriorityQueue<>(limit + 1, BY_SCORE);
+        for (int i = 0; i < touchedCount; i++) {
+            int filmId = touched[i];
+            if (Arrays.binarySearch(likedFilms, filmId) >= 0) {
+                continue;
+            }
+            double score = dotProducts[filmId] / (scale * norm(featuresByFilm[filmId], idf));
+            // При равной оценке выигрывает меньший id, в каком бы порядке фильмы ни попались
+            if (top.size() == limit && (score < top.peek().score()
+                    || score == top.peek().score() && filmId > top.peek().filmId())) {
+                continue;
+            }
+            top.add(new Scored(filmId, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(BY_SCORE.reversed());
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        ranked.forEach(scored -> result.put(scored.filmId(), scored.score()));
+        return result;
+    }
+
+    // Редкий признак говорит о вкусе больше частого: вес ln(1 + N / df)
+    private double idf(int slot, double[] cache) {
+        if (cache[slot] == 0) {
+            cache[slot] = Math.log1p((double) films / postings[slot].length);
+        }
+        return cache[slot];
+    }
+
+    private double norm(int[] filmSlots, double[] cache) {
+        double sum = 0;
+        for (int slot : filmSlots) {
+            double weight = idf(slot, cache);
+            sum += weight * weight;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private int[] row(int filmId) {
+        return filmId >= 0 && filmId < featuresByFilm.length ? featuresByFilm[filmId] : null;
+    }
+
+    private int slot(int feature) {
+        Integer slot = slots.get(feature);
+        if (slot != null) {
+            return slot;
+        }
+        slot = slots.size();
+        slots.put(feature, slot);
+        if (slot >= postings.length) {
+            postings = Arrays.copyOf(postings, Math.max(slot + 1, postings.length * 2));
+            Arrays.fill(postings, slot, postings.length, NO_FILMS);
+        }
+        return slot;
+    }
+
+    // Копия отсортированного массива с добавленным или удалённым значением
+    private static int[] with(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static int[] without(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, sorted.length - position - 1);
+        return result;
+    }
+
+    private static int feature(int type, int id) {
+        return id * TYPES + type;
+    }
+
+    private record Scored(int filmId, double score) {
+    }
+}
@@ -0,0 +1,242 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Резидентный рейтинг фильмов по числу лайков: общий, по жанру, по году и по паре (жанр, год).
+ * Порядок совпадает с FilmDbStorage.getPopularFilms: like_count DESC, id ASC.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmPopularityIndex {
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingInt(Entry::likes).reversed()
+            .thenComparingInt(Entry::filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> all = new TreeSet<>(RANKING);
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+    private final Map<Long, NavigableSet<Entry>> byGenreAndYear = new HashMap<>();
+
+    // Строится до запуска веб-сервера: при сборке на готовом приложении изменение, пришедшее между чтением
+    // из базы и заменой содержимого, было бы затёрто до перезапуска
+    @PostConstruct
+    public void rebuild() {
+        String sql = """
+                SELECT f.id, f.release_year, COALESCE(lc.cnt, 0) AS likes, fg.genre_id
+                FROM films f
+                LEFT JOIN (SELECT film_id, COUNT(*) AS cnt FROM likes GROUP BY film_id) lc ON lc.film_id = f.id
+                LEFT JOIN film_genres fg ON fg.film_id = f.id
+                ORDER BY f.id, fg.genre_id
+                """;
+
+        List<Entry> loaded = new ArrayList<>();
+        int[] current = {0, 0, 0};
+        List<Integer> genres = new ArrayList<>();
+
+        // Строки одного фильма идут подряд, поэтому собираем записи за один проход по курсору
+        jdbcTemplate.query(sql, rs -> {
+            int filmId = rs.getInt("id");
+            if (filmId != current[0] && current[0] != 0) {
+                loaded.add(new Entry(current[0], current[1], current[2], toArray(genres)));
+                genres.clear();
+            }
+            current[0] = filmId;
+            current[1] = rs.getInt("likes");
+            current[2] = rs.getInt("release_year");
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                genres.add(genreId);
+            }
+        });
+        if (current[0] != 0) {
+            loaded.add(new Entry(current[0], current[1], current[2], toArray(genres)));
+        }
+
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            all.clear();
+            byGenre.clear();
+            byYear.clear();
+            byGenreAndYear.clear();
+            loaded.forEach(this::insert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс популярности построен, фильмов: {}", loaded.size());
+    }
+
+    // Жанры и год фильма; число лайков у известного фильма не трогаем — его меняют только increment/decrement,
+    // иначе снимок фильма, прочитанный до параллельного лайка, затёр бы этот лайк
+    public void update(Film film) {
+        int[] genres = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .toArray();
+        int likes = film.getLikes() == null ? 0 : film.getLikes().size();
+
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.get(film.getId());
+            if (previous != null) {
+                delete(previous);
+                likes = previous.likes();
+            }
+            insert(new Entry(film.getId(), likes, film.getReleaseDate().getYear(), genres));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void increment(int filmId) {
+        lock.writeLock().lock();
+        try {
+            adjust(filmId, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void decrement(int filmId) {
+        lock.writeLock().lock();
+        try {
+            adjust(filmId, -1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer filmId) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.get(filmId);
+            if (previous != null) {
+                delete(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Integer> getTopFilmIds(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> ranking;
+            if (genreId != null && year != null) {
+                ranking = byGenreAndYear.get(genreAndYearKey(genreId, year));
+            } else if (genreId != null) {
+                ranking = byGenre.get(genreId);
+            } else if (year != null) {
+                ranking = byYear.get(year);
+            } else {
+                ranking = all;
+            }
+
+            if (ranking == null) {
+                return List.of();
+            }
+
+            List<Integer> result = new ArrayList<>(Math.min(count, ranking.size()));
+            for (Entry entry : ranking) {
+                if (result.size() >= count) {
+                    break;
+                }
+                result.add(entry.filmId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getLikeCount(Integer filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry == null ? 0 : entry.likes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Сверка с FilmDbStorage: возвращает false, если рейтинг в памяти разошёлся с базой
+    public boolean isConsistentWith(FilmStorage filmStorage, int count, Integer genreId, Integer year) {
+        List<Integer> expected = filmStorage.getPopularFilms(count, genreId, year).stream()
+                .map(Film::getId)
+                .toList();
+        List<Integer> actual = getTopFilmIds(count, genreId, year);
+
+        if (!expected.equals(actual)) {
+            log.warn("Индекс популярности разошёлся с базой: ожидалось {}, в памяти {}", expected, actual);
+            return false;
+        }
+        return true;
+    }
+
+    // Вызывается под блокировкой записи: запись переставляется во всех рейтингах с новым числом лайков
+    private void adjust(int filmId, int delta) {
+        Entry previous = entries.get(filmId);
+        if (previous != null) {
+            delete(previous);
+            insert(new Entry(filmId, Math.max(0, previous.likes() + delta), previous.year(), previous.genres()));
+        }
+    }
+
+    private void insert(Entry entry) {
+        entries.put(entry.filmId(), entry);
+        all.add(entry);
+        byYear.computeIfAbsent(entry.year(), k -> new TreeSet<>(RANKING)).add(entry);
+        for (int genreId : entry.genres()) {
+            byGenre.computeIfAbsent(genreId, k -> new TreeSet<>(RANKING)).add(entry);
+            byGenreAndYear.computeIfAbsent(genreAndYearKey(genreId, entry.year()), k -> new TreeSet<>(RANKING))
+                    .add(entry);
+        }
+    }
+
+    private void delete(Entry entry) {
+        entries.remove(entry.filmId());
+        all.remove(entry);
+        removeFrom(byYear, entry.year(), entry);
+        for (int genreId : entry.genres()) {
+            removeFrom(byGenre, genreId, entry);
+            removeFrom(byGenreAndYear, genreAndYearKey(genreId, entry.year()), entry);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, NavigableSet<Entry>> rankings, K key, Entry entry) {
+        NavigableSet<Entry> ranking = rankings.get(key);
+        if (ranking != null) {
+            ranking.remove(entry);
+            if (ranking.isEmpty()) {
+                rankings.remove(key);
+            }
+        }
+    }
+
+    private static long genreAndYearKey(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private record Entry(int filmId, int likes, int year, int[] genres) {
+    }
+}
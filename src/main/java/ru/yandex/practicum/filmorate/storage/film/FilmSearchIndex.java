@@ -0,0 +1,270 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый индекс по названиям фильмов и именам режиссёров для /films/search.
+ * Набор результатов точного поиска совпадает с семантикой LOWER(...) LIKE '%q%' из FilmDbStorage.searchFilms,
+ * но кандидаты берутся из триграммных постингов, а не полным перебором фильмов.
+ * Там же поддерживается трай автодополнения, взвешенный по числу лайков.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+
+    private static final double EXACT_MATCH = 3;
+    private static final double WORD_PREFIX_MATCH = 2;
+    private static final double SUBSTRING_MATCH = 1;
+    private static final double FUZZY_THRESHOLD = 0.5;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex directorNames = new TrigramIndex();
+    private final Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+    private final Map<Integer, Integer> filmWeights = new HashMap<>();
+    private final SuggestTrie suggestions = new SuggestTrie();
+
+    // До приёма запросов: вес, обновлённый лайком во время сборки, иначе был бы затёрт
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            directorNames.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            filmWeights.clear();
+            suggestions.clear();
+
+            jdbcTemplate.query("SELECT id, name, like_count FROM films", rs -> {
+                int filmId = rs.getInt("id");
+                String name = rs.getString("name");
+                titles.put(filmId, normalize(name));
+                filmWeights.put(filmId, rs.getInt("like_count"));
+                suggestions.put(Suggestion.Type.FILM, filmId, name, rs.getInt("like_count"));
+            });
+            jdbcTemplate.query("SELECT film_id, director_id FROM film_director", rs -> {
+                link(rs.getInt("film_id"), rs.getInt("director_id"));
+            });
+            jdbcTemplate.query("SELECT id, name FROM director", rs -> {
+                int directorId = rs.getInt("id");
+                String name = rs.getString("name");
+                directorNames.put(directorId, normalize(name));
+                suggestions.put(Suggestion.Type.DIRECTOR, directorId, name, directorWeight(directorId));
+            });
+            log.info("Поисковый индекс построен, фильмов: {}, режиссёров: {}", titles.size(), directorNames.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            Set<Integer> previousDirectors = unlinkFilm(film.getId());
+            int weight = popularityIndex.getLikeCount(film.getId());
+            titles.put(film.getId(), normalize(film.getName()));
+            filmWeights.put(film.getId(), weight);
+            suggestions.put(Suggestion.Type.FILM, film.getId(), film.getName(), weight);
+            if (film.getDirectors() != null) {
+                for (Director director : film.getDirectors()) {
+                    if (director.getName() != null && directorNames.get(director.getId()) == null) {
+                        directorNames.put(director.getId(), normalize(director.getName()));
+                        suggestions.put(Suggestion.Type.DIRECTOR, director.getId(), director.getName(), 0);
+                    }
+                    link(film.getId(), director.getId());
+                    previousDirectors.add(director.getId());
+                }
+            }
+            previousDirectors.forEach(this::refreshDirectorWeight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(Integer filmId) {
+        lock.writeLock().lock();
+        try {
+            titles.remove(filmId);
+            filmWeights.remove(filmId);
+            suggestions.remove(Suggestion.Type.FILM, filmId);
+            unlinkFilm(filmId).forEach(this::refreshDirectorWeight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexDirector(Director director) {
+        lock.writeLock().lock();
+        try {
+            directorNames.put(director.getId(), normalize(director.getName()));
+            suggestions.put(Suggestion.Type.DIRECTOR, director.getId(), director.getName(),
+                    directorWeight(director.getId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(Integer directorId) {
+        lock.writeLock().lock();
+        try {
+            directorNames.remove(directorId);
+            suggestions.remove(Suggestion.Type.DIRECTOR, directorId);
+            Set<Integer> films = filmsByDirector.remove(directorId);
+            if (films != null) {
+                films.forEach(filmId -> removeFrom(directorsByFilm, filmId, directorId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Вес фильма в автодополнении — число лайков, режиссёра — сумма лайков его фильмов
+    public void updateWeight(Film film) {
+        lock.writeLock().lock();
+        try {
+            if (!filmWeights.containsKey(film.getId())) {
+                return;
+            }
+            int weight = film.getLikes() == null ? 0 : film.getLikes().size();
+            filmWeights.put(film.getId(), weight);
+            suggestions.updateWeight(Suggestion.Type.FILM, film.getId(), weight);
+            directorsByFilm.getOrDefault(film.getId(), Set.of()).forEach(this::refreshDirectorWeight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return suggestions.complete(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Integer> search(String query, boolean searchByDirector, boolean searchByTitle) {
+        return search(query, searchByDirector, searchByTitle, false);
+    }
+
+    public List<Integer> search(String query, boolean searchByDirector, boolean searchByTitle, boolean fuzzy) {
+        String normalized = normalize(query);
+        Map<Integer, Double> scores = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            if (searchByTitle) {
+                match(titles, normalized, fuzzy)
+                        .forEach((filmId, score) -> scores.merge(filmId, score, Math::max));
+            }
+
+            if (searchByDirector) {
+                match(directorNames, normalized, fuzzy).forEach((directorId, score) -> {
+                    for (Integer filmId : filmsByDirector.getOrDefault(directorId, Set.of())) {
+                        scores.merge(filmId, score, Math::max);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Сначала качество совпадения, затем популярность, затем id — как в остальных выборках
+        return scores.keySet().stream()
+                .sorted(Comparator.<Integer>comparingDouble(scores::get).reversed()
+                        .thenComparing(Comparator.comparingInt(popularityIndex::getLikeCount).reversed())
+                        .thenComparingInt(Integer::intValue))
+                .toList();
+    }
+
+    public long estimateFootprintBytes() {
+        lock.readLock().lock();
+        try {
+            return titles.estimateFootprintBytes() + directorNames.estimateFootprintBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Map<Integer, Double> match(TrigramIndex index, String query, boolean fuzzy) {
+        if (fuzzy) {
+            return index.similar(query, FUZZY_THRESHOLD);
+        }
+
+        Map<Integer, Double> result = new HashMap<>();
+        for (Integer id : index.containing(query)) {
+            result.put(id, matchQuality(index.get(id), query));
+        }
+        return result;
+    }
+
+    private static double matchQuality(String text, String query) {
+        if (text.equals(query)) {
+            return EXACT_MATCH;
+        }
+
+        int position = text.indexOf(query);
+        while (position >= 0) {
+            if (position == 0 || !Character.isLetterOrDigit(text.charAt(position - 1))) {
+                return WORD_PREFIX_MATCH;
+            }
+            position = text.indexOf(query, position + 1);
+        }
+        return SUBSTRING_MATCH;
+    }
+
+    static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private void link(int filmId, int directorId) {
+        directorsByFilm.computeIfAbsent(filmId, k -> new HashSet<>()).add(directorId);
+        filmsByDirector.computeIfAbsent(directorId, k -> new HashSet<>()).add(filmId);
+    }
+
+    private Set<Integer> unlinkFilm(int filmId) {
+        Set<Integer> directors = directorsByFilm.remove(filmId);
+        if (directors == null) {
+            return new HashSet<>();
+        }
+        directors.forEach(directorId -> removeFrom(filmsByDirector, directorId, filmId));
+        return directors;
+    }
+
+    private int directorWeight(int directorId) {
+        return filmsByDirector.getOrDefault(directorId, Set.of()).stream()
+                .mapToInt(filmId -> filmWeights.getOrDefault(filmId, 0))
+                .sum();
+    }
+
+    private void refreshDirectorWeight(int directorId) {
+        suggestions.updateWeight(Suggestion.Type.DIRECTOR, directorId, directorWeight(directorId));
+    }
+
+    private static void removeFrom(Map<Integer, Set<Integer>> links, Integer key, Integer id) {
+        Set<Integer> ids = links.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                links.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Предрассчитанная модель сходства фильмов по совместным лайкам (item-item).
+ * Для каждого фильма хранятся TOP_K ближайших фильмов по косинусу: CSR-массивы id и float-оценок.
+ * Модель пересчитывается по расписанию из снимка LikesMatrix и подменяется целиком,
+ * поэтому чтения идут без блокировок, а лайки до следующего пересчёта в ней не видны.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSimilarityIndex {
+
+    static final int TOP_K = 20;
+    private static final int FILMS_PER_TASK = 64;
+
+    private final LikesMatrix likesMatrix;
+
+    private volatile Model model = new Model(new int[]{0}, new int[0], new float[0]);
+    private final AtomicLong version = new AtomicLong();
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 0 * * * *")
+    public void recompute() {
+        long start = System.nanoTime();
+        LikesMatrix.Snapshot snapshot = likesMatrix.snapshot();
+        int films = snapshot.usersByFilm().rows();
+
+        int[][] neighbours = new int[films][];
+        float[][] scores = new float[films][];
+        ForkJoinPool.commonPool().invoke(new SimilarityTask(snapshot, 0, films, neighbours, scores));
+
+        int[] offsets = new int[films + 1];
+        for (int filmId = 0; filmId < films; filmId++) {
+            offsets[filmId + 1] = offsets[filmId] + neighbours[filmId].length;
+        }
+        int[] filmIds = new int[offsets[films]];
+        float[] similarities = new float[offsets[films]];
+        for (int filmId = 0; filmId < films; filmId++) {
+            System.arraycopy(neighbours[filmId], 0, filmIds, offsets[filmId], neighbours[filmId].length);
+            System.arraycopy(scores[filmId], 0, similarities, offsets[filmId], scores[filmId].length);
+        }
+
+        model = new Model(offsets, filmIds, similarities);
+        version.incrementAndGet();
+        log.info("Модель похожих фильмов пересчитана, фильмов: {}, связей: {}, за {} мс",
+                films, filmIds.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Меняется при каждой подмене модели — по нему кэши узнают, что их результаты устарели
+    public long version() {
+        return version.get();
+    }
+
+    // Ближайшие фильмы по убыванию сходства
+    public List<Integer> similarFilms(int filmId, int limit) {
+        Model current = model;
+        int from = current.start(filmId);
+        int to = Math.min(current.end(filmId), from + limit);
+        List<Integer> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            result.add(current.filmIds[i]);
+        }
+        return result;
+    }
+
+    // Слияние списков соседей лайкнутых фильмов: кандидат получает сумму сходства со всеми ними
+    public Map<Integer, Double> scoreCandidates(int[] likedFilms) {
+        Model current = model;
+        Map<Integer, Double> scores = new HashMap<>();
+        for (int filmId : likedFilms) {
+            for (int i = current.start(filmId), end = current.end(filmId); i < end; i++) {
+                int candidate = current.filmIds[i];
+                if (Arrays.binarySearch(likedFilms, candidate) < 0) {
+                    scores.merge(candidate, (double) current.scores[i], Double::sum);
+                }
+            }
+        }
+        return scores;
+    }
+
+    private record Model(int[] offsets, int[] filmIds, float[] scores) {
+
+        int start(int filmId) {
+            return filmId >= 0 && filmId < offsets.length - 1 ? offsets[filmId] : 0;
+        }
+
+        int end(int filmId) {
+            return filmId >= 0 && filmId < offsets.length - 1 ? offsets[filmId + 1] : 0;
+        }
+    }
+
+    /**
+     * Считает соседей для диапазона фильмов, деля его пополам, пока диапазон не станет достаточно мал.
+     * Совместные лайки фильма собираются обходом его пользователей и их фильмов в общий счётчик задачи.
+     */
+    private static final class SimilarityTask extends RecursiveAction {
+
+        private final LikesMatrix.Snapshot snapshot;
+        private final int from;
+        private final int to;
+        private final int[][] neighbours;
+        private final float[][] scores;
+
+        private SimilarityTask(LikesMatrix.Snapshot snapshot, int from, int to,
+                               int[][] neighbours, float[][] scores) {
+            this.snapshot = snapshot;
+            this.from = from;
+            this.to = to;
+            this.neighbours = neighbours;
+            this.scores = scores;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILMS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SimilarityTask(snapshot, from, middle, neighbours, scores),
+                        new SimilarityTask(snapshot, middle, to, neighbours, scores));
+                return;
+            }
+
+            LikesMatrix.Csr usersByFilm = snapshot.usersByFilm();
+            LikesMatrix.Csr filmsByUser = snapshot.filmsByUser();
+            int[] coLikes = new int[usersByFilm.rows()];
+            int[] touched = new int[64];
+
+            for (int filmId = from; filmId < to; filmId++) {
+                int touchedCount = 0;
+                for (int i = usersByFilm.start(filmId), end = usersByFilm.end(filmId); i < end; i++) {
+                    int userId = usersByFilm.indices()[i];
+                    for (int j = filmsByUser.start(userId), userEnd = filmsByUser.end(userId); j < userEnd; j++) {
+                        int otherId = filmsByUser.indices()[j];
+                        if (otherId != filmId && coLikes[otherId]++ == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = otherId;
+                        }
+                    }
+                }
+
+                int[] bestIds = new int[Math.min(TOP_K, touchedCount)];
+                float[] bestScores = new float[bestIds.length];
+                int found = 0;
+                int size = usersByFilm.size(filmId);
+                for (int i = 0; i < touchedCount; i++) {
+                    int otherId = touched[i];
+                    float score = (float) (coLikes[otherId] / Math.sqrt((double) size * usersByFilm.size(otherId)));
+                    coLikes[otherId] = 0;
+                    found = insert(bestIds, bestScores, found, otherId, score);
+                }
+                neighbours[filmId] = bestIds;
+                scores[filmId] = bestScores;
+            }
+        }
+
+        // Вставка в отсортированный топ: по убыванию сходства, при равенстве — по возрастанию id
+        private static int insert(int[] ids, float[] scores, int size, int id, float score) {
+            int position = size;
+            while (position > 0 && (scores[position - 1] < score
+                    || scores[position - 1] == score && ids[position - 1] > id)) {
+                position--;
+            }
+            if (position >= ids.length) {
+                return size;
+            }
+            int moved = Math.min(size, ids.length - 1) - position;
+            System.arraycopy(ids, position, ids, position + 1, moved);
+            System.arraycopy(scores, position, scores, position + 1, moved);
+            ids[position] = id;
+            scores[position] = score;
+            return Math.min(size + 1, ids.length);
+        }
+    }
+}
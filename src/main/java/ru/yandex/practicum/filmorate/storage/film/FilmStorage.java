@@ -3,14 +3,21 @@ package ru.yandex.practicum.filmorate.storage.film;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Film;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     @Transactional(readOnly = true)
     List<Film> findAll();
 
+    // Фильмы с id > afterId по возрастанию id, по одному из курсора; limit == null — до конца таблицы.
+    // withLikes == false — краткое представление: вместо списка лайков только их число
+    @Transactional(readOnly = true)
+    void streamFilms(int afterId, Integer limit, boolean withLikes, Consumer<Film> consumer);
+
     @Transactional
     Film create(Film film);
 
@@ -20,6 +27,18 @@ public interface FilmStorage {
     @Transactional(readOnly = true)
     Optional<Film> findById(Integer id);
 
+    @Transactional(readOnly = true)
+    default List<Film> findByIds(List<Integer> ids) {
+        return findByIds(ids, true);
+    }
+
+    @Transactional(readOnly = true)
+    List<Film> findByIds(List<Integer> ids, boolean withLikes);
+
+    boolean existsById(Integer id);
+
+    boolean existsAll(Collection<Integer> ids);
+
     @Transactional
     void delete(Integer id);
 
@@ -41,9 +60,6 @@ public interface FilmStorage {
     @Transactional
     List<Film> getDirectorsFilms(Integer directorId);
 
-    @Transactional(readOnly = true)
-    List<Film> getCommonFilms(Integer userId, Integer friendId);
-
-    @Transactional(readOnly = true)
-    List<Film> getRecommendedFilms(Integer userId, Integer similarUserId);
+    @Transactional
+    int reconcileLikeCounts();
 }
\ No newline at end of file
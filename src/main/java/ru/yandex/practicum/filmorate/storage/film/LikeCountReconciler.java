@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Пересобирает films.like_count из таблицы likes при старте приложения,
+ * чтобы исправить расхождения после аварийного завершения.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeCountReconciler {
+
+    private final FilmStorage filmStorage;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        int fixed = filmStorage.reconcileLikeCounts();
+        log.info("Сверка счётчиков лайков завершена, исправлено фильмов: {}", fixed);
+    }
+}
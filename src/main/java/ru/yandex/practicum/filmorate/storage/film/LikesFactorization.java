@@ -0,0 +1,271 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Факторизация матрицы лайков методом чередующихся наименьших квадратов для неявных оценок:
+ * лайк — предпочтение 1 с повышенным доверием, отсутствие лайка — 0 с доверием 1.
+ * Модель обучается ночью по снимку LikesMatrix, сохраняется в файл и подменяется целиком.
+ * При старте приложения файл читается, только если отпечаток лайков в нём совпадает с текущим;
+ * иначе модель обучается заново в фоне, а до конца обучения рекомендации ALS пусты.
+ */
+@Slf4j
+@Component
+public class LikesFactorization {
+
+    static final int FACTORS = 32;
+    static final int ITERATIONS = 10;
+    private static final double REGULARIZATION = 0.1;
+    private static final double CONFIDENCE = 40;
+    private static final int ROWS_PER_TASK = 256;
+    private static final long SEED = 20240501L;
+
+    private final LikesMatrix likesMatrix;
+    private final Path modelFile;
+    // Один поток: стартовое и ночное обучение не идут одновременно
+    private final ExecutorService trainer = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("als-training").daemon().factory());
+
+    private final AtomicReference<FactorModel> model = new AtomicReference<>(FactorModel.empty());
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastTrainingMillis = -1;
+
+    public LikesFactorization(
+            LikesMatrix likesMatrix,
+            @Value("${filmorate.recommendations.als.model-file:target/als-model.bin}") Path modelFile) {
+        this.likesMatrix = likesMatrix;
+        this.modelFile = modelFile;
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long fingerprint = fingerprint(likesMatrix.snapshot());
+        if (Files.exists(modelFile)) {
+            try {
+                FactorModel loaded = FactorModel.map(modelFile);
+                if (loaded.factors() == FACTORS && loaded.fingerprint() == fingerprint) {
+                    model.set(loaded);
+                    version.incrementAndGet();
+                    log.info("Модель факторизации загружена из {}", modelFile);
+                    return;
+                }
+                log.info("Модель факторизации в {} обучена по другим лайкам — обучаем заново", modelFile);
+            } catch (IOException e) {
+                log.warn("Не удалось загрузить модель факторизации из {}", modelFile, e);
+            }
+        }
+        trainer.execute(this::retrain);
+    }
+
+    @Scheduled(cron = "0 30 3 * * *")
+    public void scheduleRetrain() {
+        trainer.execute(this::retrain);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        trainer.shutdownNow();
+    }
+
+    void retrain() {
+        long start = System.nanoTime();
+        LikesMatrix.Snapshot snapshot = likesMatrix.snapshot();
+        FactorModel current = model.get();
+        if (current.factors() == FACTORS && current.fingerprint() == fingerprint(snapshot)) {
+            log.info("Лайки не менялись с прошлого обучения — модель факторизации оставлена прежней");
+            return;
+        }
+        FactorModel trained = train(snapshot, FACTORS, ITERATIONS);
+        try {
+            trained.write(modelFile);
+            trained = FactorModel.map(modelFile);
+        } catch (IOException e) {
+            // Модель в памяти всё равно рабочая — потеряется только быстрый старт
+            log.warn("Не удалось сохранить модель факторизации в {}", modelFile, e);
+        }
+        model.set(trained);
+        version.incrementAndGet();
+        lastTrainingMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Модель факторизации обучена за {} мс", lastTrainingMillis);
+    }
+
+    // Лучшие по прогнозу фильмы, которых пользователь ещё не лайкал (likedFilms отсортированы)
+    public Map<Integer, Double> scoreCandidates(int userId, int[] likedFilms, int limit) {
+        return model.get().topFilms(userId, likedFilms, limit);
+    }
+
+    // Меняется при каждой подмене модели — по нему кэши узнают, что их результаты устарели
+    public long version() {
+        return version.get();
+    }
+
+    // -1, пока модель не обучалась в этом процессе
+    public long lastTrainingMillis() {
+        return lastTrainingMillis;
+    }
+
+    static FactorModel train(LikesMatrix.Snapshot snapshot, int factors, int iterations) {
+        LikesMatrix.Csr filmsByUser = snapshot.filmsByUser();
+        LikesMatrix.Csr usersByFilm = snapshot.usersByFilm();
+        float[] userFactors = new float[filmsByUser.rows() * factors];
+        float[] filmFactors = new float[usersByFilm.rows() * factors];
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < filmFactors.length; i++) {
+            filmFactors[i] = (float) (random.nextGaussian() * 0.01);
+        }
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            solve(filmsByUser, filmFactors, userFactors, factors);
+            solve(usersByFilm, userFactors, filmFactors, factors);
+        }
+        return new FactorModel(factors, fingerprint(snapshot), userFactors, filmFactors);
+    }
+
+    // Хеш строк «пользователь → фильмы»: учитывает число лайков, наибольшие id и сами пары
+    static long fingerprint(LikesMatrix.Snapshot snapshot) {
+        LikesMatrix.Csr filmsByUser = snapshot.filmsByUser();
+        long hash = snapshot.usersByFilm().rows();
+        for (int offset : filmsByUser.offsets()) {
+            hash = 31 * hash + offset;
+        }
+        for (int filmId : filmsByUser.indices()) {
+            hash = 31 * hash + filmId;
+        }
+        return hash;
+    }
+
+    // Пересчёт всех векторов одной стороны при фиксированных векторах другой
+    private static void solve(LikesMatrix.Csr rows, float[] fixed, float[] target, int factors) {
+        double[] gram = new double[factors * factors];
+        for (int offset = 0; offset < fixed.length; offset += factors) {
+            for (int p = 0; p < factors; p++) {
+                double value = fixed[offset + p];
+                for (int q = 0; q <= p; q++) {
+                    gram[p * factors + q] += value * fixed[offset + q];
+                }
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new SolveTask(rows, fixed, target, gram, factors, 0, rows.rows()));
+    }
+
+    /**
+     * Решает нормальные уравнения для диапазона строк, деля его пополам, пока диапазон не станет мал.
+     * Матрица системы — общая YᵀY плюс поправка только по лайкнутым столбцам строки,
+     * поэтому стоимость строки зависит от числа её лайков, а не от размера другой стороны.
+     */
+    private static final class SolveTask extends RecursiveAction {
+
+        private final LikesMatrix.Csr rows;
+        private final float[] fixed;
+        private final float[] target;
+        private final double[] gram;
+        private final int factors;
+        private final int from;
+        private final int to;
+
+        private SolveTask(LikesMatrix.Csr rows, float[] fixed, float[] target, double[] gram,
+                          int factors, int from, int to) {
+            this.rows = rows;
+            this.fixed = fixed;
+            this.target = target;
+            this.gram = gram;
+            this.factors = factors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SolveTask(rows, fixed, target, gram, factors, from, middle),
+                        new SolveTask(rows, fixed, target, gram, factors, middle, to));
+                return;
+            }
+
+            double[] matrix = new double[factors * factors];
+            double[] vector = new double[factors];
+            for (int row = from; row < to; row++) {
+                // Без лайков вектор нулевой: прогноз по такой строке ничего не скажет
+                if (rows.size(row) == 0) {
+                    Arrays.fill(target, row * factors, (row + 1) * factors, 0);
+                    continue;
+                }
+                System.arraycopy(gram, 0, matrix, 0, matrix.length);
+                Arrays.fill(vector, 0);
+                for (int p = 0; p < factors; p++) {
+                    matrix[p * factors + p] += REGULARIZATION;
+                }
+                for (int i = rows.start(row), end = rows.end(row); i < end; i++) {
+                    int offset = rows.indices()[i] * factors;
+                    for (int p = 0; p < factors; p++) {
+                        double value = fixed[offset + p];
+                        vector[p] += (1 + CONFIDENCE) * value;
+                        for (int q = 0; q <= p; q++) {
+                            matrix[p * factors + q] += CONFIDENCE * value * fixed[offset + q];
+                        }
+                    }
+                }
+                choleskySolve(matrix, vector, factors);
+                for (int p = 0; p < factors; p++) {
+                    target[row * factors + p] = (float) vector[p];
+                }
+            }
+        }
+
+        // Матрица симметрична и положительно определена (есть регуляризация), заполнен нижний треугольник
+        private static void choleskySolve(double[] matrix, double[] vector, int n) {
+            for (int j = 0; j < n; j++) {
+                double diagonal = matrix[j * n + j];
+                for (int p = 0; p < j; p++) {
+                    diagonal -= matrix[j * n + p] * matrix[j * n + p];
+                }
+                diagonal = Math.sqrt(diagonal);
+                matrix[j * n + j] = diagonal;
+                for (int i = j + 1; i < n; i++) {
+                    double value = matrix[i * n + j];
+                    for (int p = 0; p < j; p++) {
+                        value -= matrix[i * n + p] * matrix[j * n + p];
+                    }
+                    matrix[i * n + j] = value / diagonal;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                double value = vector[i];
+                for (int p = 0; p < i; p++) {
+                    value -= matrix[i * n + p] * vector[p];
+                }
+                vector[i] = value / matrix[i * n + i];
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                double value = vector[i];
+                for (int p = i + 1; p < n; p++) {
+                    value -= matrix[p * n + i] * vector[p];
+                }
+                vector[i] = value / matrix[i * n + i];
+            }
+        }
+    }
+}
@@ -0,0 +1,576 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Резидентная разреженная матрица лайков пользователь × фильм для рекомендаций.
+ * Хранится в двух ориентациях (пользователь → фильмы и фильм → пользователи) в формате CSR на массивах int.
+ * Изменения пишутся в небольшой слой изменённых строк, который периодически сливается в CSR.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikesMatrix {
+
+    public enum Similarity {
+        OVERLAP, JACCARD, COSINE
+    }
+
+    public record Neighbour(int userId, int overlap, double similarity) {
+    }
+
+    // Неизменяемая копия матрицы для фоновых расчётов без удержания блокировки
+    record Snapshot(Csr filmsByUser, Csr usersByFilm) {
+    }
+
+    record Csr(int[] offsets, int[] indices) {
+
+        int rows() {
+            return offsets.length - 1;
+        }
+
+        int start(int row) {
+            return row < rows() ? offsets[row] : 0;
+        }
+
+        int end(int row) {
+            return row < rows() ? offsets[row + 1] : 0;
+        }
+
+        int size(int row) {
+            return end(row) - start(row);
+        }
+    }
+
+    static final Comparator<Neighbour> BY_SIMILARITY = Comparator
+            .comparingDouble(Neighbour::similarity)
+            .thenComparingInt(Neighbour::overlap)
+            .thenComparing(Comparator.comparingInt(Neighbour::userId).reversed());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SparseRows filmsByUser = new SparseRows();
+    private final SparseRows usersByFilm = new SparseRows();
+
+    // До приёма запросов, чтобы лайк во время сборки не затёрся; заодно раньше моделей, считаемых по снимку
+    @PostConstruct
+    public void rebuild() {
+        // Лайки читаются сразу в массивы примитивов под их число,
+        // и строки CSR раскладываются из них без промежуточных объектов
+        int expected = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+        int[][] pairs = {new int[expected], new int[expected]};
+        int[] loaded = {0};
+        jdbcTemplate.query("SELECT user_id, film_id FROM likes", rs -> {
+            int i = loaded[0]++;
+            if (i == pairs[0].length) {
+                // Лайки, добавленные между подсчётом и выборкой
+                pairs[0] = Arrays.copyOf(pairs[0], Math.max(16, i * 2));
+                pairs[1] = Arrays.copyOf(pairs[1], pairs[0].length);
+            }
+            pairs[0][i] = rs.getInt("user_id");
+            pairs[1][i] = rs.getInt("film_id");
+        });
+        int[] users = pairs[0].length == loaded[0] ? pairs[0] : Arrays.copyOf(pairs[0], loaded[0]);
+        int[] films = pairs[1].length == loaded[0] ? pairs[1] : Arrays.copyOf(pairs[1], loaded[0]);
+
+        lock.writeLock().lock();
+        try {
+            filmsByUser.load(users, films);
+            usersByFilm.load(films, users);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Матрица лайков построена, лайков: {}", loaded[0]);
+    }
+
+    // Возвращает false, если лайк уже был: повторный лайк не должен менять счётчики
+    public boolean addLike(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            usersByFilm.add(filmId, userId);
+            return filmsByUser.add(userId, filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean removeLike(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            usersByFilm.remove(filmId, userId);
+            return filmsByUser.remove(userId, filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Лайки удаляются каскадно вместе с фильмом или пользователем. Возвращает тех, кто лайкал фильм
+    public int[] removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            int[] users = usersByFilm.row(filmId);
+            for (int userId : users) {
+                filmsByUser.remove(userId, filmId);
+            }
+            usersByFilm.clearRow(filmId);
+            return users;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Возвращает фильмы, которые лайкал пользователь
+    public int[] removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            int[] films = filmsByUser.row(userId);
+            for (int filmId : films) {
+                usersByFilm.remove(filmId, userId);
+            }
+            filmsByUser.clearRow(userId);
+            return films;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new Snapshot(filmsByUser.copy(), usersByFilm.copy());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Отсортированные id фильмов, которые лайкнул пользователь
+    public int[] likedFilms(int userId) {
+        lock.readLock().lock();
+        try {
+            return filmsByUser.row(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Число пользователей, у которых есть хотя бы один лайк
+    public int userCount() {
+        lock.readLock().lock();
+        try {
+            return filmsByUser.nonEmptyRows();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Пользователи, у которых есть хотя бы один лайк, по возрастанию id
+    public int[] activeUsers() {
+        lock.readLock().lock();
+        try {
+            int[] users = new int[filmsByUser.nonEmptyRows()];
+            int count = 0;
+            for (int userId = 0; userId <= filmsByUser.maxRow() && count < users.length; userId++) {
+                if (filmsByUser.size(userId) > 0) {
+                    users[count++] = userId;
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int likeCount(int filmId) {
+        lock.readLock().lock();
+        try {
+            return usersByFilm.size(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Пересечения считаются обходом столбцов фильмов пользователя: затрагиваются только соседи с общими лайками
+    public List<Neighbour> findNeighbours(int userId, int limit, Similarity similarity) {
+        lock.readLock().lock();
+        try {
+            int ownSize = filmsByUser.size(userId);
+            if (ownSize == 0 || limit <= 0) {
+                return List.of();
+            }
+
+            int[] data = filmsByUser.data(userId);
+            int start = filmsByUser.start(userId);
+            int end = filmsByUser.end(userId);
+            long occurrences = 0;
+            for (int i = start; i < end; i++) {
+                occurrences += usersByFilm.size(data[i]);
+            }
+            OverlapCounter overlap = new OverlapCounter((int) Math.min(occurrences, filmsByUser.nonEmptyRows()));
+            for (int i = start; i < end; i++) {
+                int filmId = data[i];
+                int[] column = usersByFilm.data(filmId);
+                for (int j = usersByFilm.start(filmId), columnEnd = usersByFilm.end(filmId); j < columnEnd; j++) {
+                    if (column[j] != userId) {
+                        overlap.increment(column[j]);
+                    }
+                }
+            }
+
+            PriorityQueue<Neighbour> top = new PriorityQueue<>(Math.min(limit, overlap.size) + 1, BY_SIMILARITY);
+            for (int slot = 0; slot < overlap.keys.length; slot++) {
+                if (overlap.keys[slot] == 0) {
+                    continue;
+                }
+                int otherId = overlap.keys[slot] - 1;
+                int common = overlap.counts[slot];
+                top.add(new Neighbour(otherId, common,
+                        score(similarity, common, ownSize, filmsByUser.size(otherId))));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            List<Neighbour> result = new ArrayList<>(top);
+            result.sort(BY_SIMILARITY.reversed());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Точное сходство только с заданными кандидатами (например, из LSH) — пересечением отсортированных строк
+    public List<Neighbour> scoreNeighbours(int userId, int[] candidates, int limit, Similarity similarity) {
+        lock.readLock().lock();
+        try {
+            int ownSize = filmsByUser.size(userId);
+            if (ownSize == 0 || limit <= 0) {
+                return List.of();
+            }
+
+            int[] own = filmsByUser.data(userId);
+            int ownStart = filmsByUser.start(userId);
+            PriorityQueue<Neighbour> top = new PriorityQueue<>(Math.min(limit, candidates.length) + 1, BY_SIMILARITY);
+            for (int otherId : candidates) {
+                if (otherId == userId) {
+                    continue;
+                }
+                int[] other = filmsByUser.data(otherId);
+                int common = intersectionSize(own, ownStart, ownStart + ownSize,
+                        other, filmsByUser.start(otherId), filmsByUser.end(otherId));
+                if (common == 0) {
+                    continue;
+                }
+                top.add(new Neighbour(otherId, common,
+                        score(similarity, common, ownSize, filmsByUser.size(otherId))));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            List<Neighbour> result = new ArrayList<>(top);
+            result.sort(BY_SIMILARITY.reversed());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Фильмы, которые лайкнули оба пользователя, по возрастанию id — слиянием отсортированных строк
+    public int[] commonFilms(int userId, int otherId) {
+        lock.readLock().lock();
+        try {
+            int[] own = filmsByUser.data(userId);
+            int[] other = filmsByUser.data(otherId);
+            int i = filmsByUser.start(userId);
+            int ownEnd = filmsByUser.end(userId);
+            int j = filmsByUser.start(otherId);
+            int otherEnd = filmsByUser.end(otherId);
+            int[] result = new int[Math.min(ownEnd - i, otherEnd - j)];
+            int count = 0;
+            while (i < ownEnd && j < otherEnd) {
+                if (own[i] < other[j]) {
+                    i++;
+                } else if (own[i] > other[j]) {
+                    j++;
+                } else {
+                    result[count++] = own[i];
+                    i++;
+                    j++;
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Фильмы соседа, которых пользователь ещё не лайкал, по возрастанию id
+    public int[] filmsNotLikedBy(int neighbourId, int userId) {
+        lock.readLock().lock();
+        try {
+            int[] neighbour = filmsByUser.data(neighbourId);
+            int[] own = filmsByUser.data(userId);
+            int i = filmsByUser.start(neighbourId);
+            int neighbourEnd = filmsByUser.end(neighbourId);
+            int j = filmsByUser.start(userId);
+            int ownEnd = filmsByUser.end(userId);
+            int[] result = new int[neighbourEnd - i];
+            int count = 0;
+            while (i < neighbourEnd) {
+                while (j < ownEnd && own[j] < neighbour[i]) {
+                    j++;
+                }
+                if (j == ownEnd || own[j] != neighbour[i]) {
+                    result[count++] = neighbour[i];
+                }
+                i++;
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Счётчики общих лайков одного вызова findNeighbours: открытая адресация id соседа → число общих фильмов.
+     * Размер задаётся числом затронутых соседей, а не максимальным id, и память освобождается после запроса.
+     */
+    private static final class OverlapCounter {
+
+        // id + 1, чтобы ноль означал пустую ячейку
+        private int[] keys;
+        private int[] counts;
+        private int size;
+
+        OverlapCounter(int expected) {
+            int capacity = 16;
+            while (capacity < expected * 2L) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            counts = new int[capacity];
+        }
+
+        void increment(int id) {
+            int slot = slot(keys, id);
+            if (keys[slot] == 0) {
+                if ((size + 1) * 2 > keys.length) {
+                    grow();
+                    slot = slot(keys, id);
+                }
+                keys[slot] = id + 1;
+                size++;
+            }
+            counts[slot]++;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(keys, oldKeys[i] - 1);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        // Ячейка с этим id или первая пустая по линейному пробированию
+        private static int slot(int[] keys, int id) {
+            int mask = keys.length - 1;
+            int hash = id * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != 0 && keys[slot] != id + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    private static int intersectionSize(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        int common = 0;
+        while (aFrom < aTo && bFrom < bTo) {
+            if (a[aFrom] < b[bFrom]) {
+                aFrom++;
+            } else if (a[aFrom] > b[bFrom]) {
+                bFrom++;
+            } else {
+                common++;
+                aFrom++;
+                bFrom++;
+            }
+        }
+        return common;
+    }
+
+    static double score(Similarity similarity, int common, int ownSize, int otherSize) {
+        return switch (similarity) {
+            case OVERLAP -> common;
+            case JACCARD -> (double) common / (ownSize + otherSize - common);
+            case COSINE -> common / Math.sqrt((double) ownSize * otherSize);
+        };
+    }
+
+    /**
+     * Строки разреженной матрицы: базовый слой в CSR (offsets/indices) и изменённые после сборки строки.
+     * Изменение строки копирует только её, а когда изменённых строк становится много, слои сливаются.
+     * Класс не потокобезопасен — синхронизацию обеспечивает владелец.
+     */
+    private static final class SparseRows {
+
+        private static final int[] EMPTY = new int[0];
+        private static final int MIN_COMPACT_THRESHOLD = 1024;
+
+        private int[] offsets = {0};
+        private int[] indices = EMPTY;
+        private final Map<Integer, int[]> changed = new HashMap<>();
+        private int maxRow;
+        private int nonEmptyRows;
+
+        void load(int[] rows, int[] columns) {
+            int max = 0;
+            for (int row : rows) {
+                max = Math.max(max, row);
+            }
+            int[] newOffsets = new int[max + 2];
+            for (int row : rows) {
+                newOffsets[row + 1]++;
+            }
+            for (int i = 1; i < newOffsets.length; i++) {
+                newOffsets[i] += newOffsets[i - 1];
+            }
+            int[] newIndices = new int[rows.length];
+            int[] fill = Arrays.copyOf(newOffsets, newOffsets.length - 1);
+            for (int i = 0; i < rows.length; i++) {
+                newIndices[fill[rows[i]]++] = columns[i];
+            }
+            for (int row = 0; row <= max; row++) {
+                Arrays.sort(newIndices, newOffsets[row], newOffsets[row + 1]);
+            }
+
+            offsets = newOffsets;
+            indices = newIndices;
+            changed.clear();
+            maxRow = max;
+            nonEmptyRows = 0;
+            for (int row = 0; row <= max; row++) {
+                if (newOffsets[row + 1] > newOffsets[row]) {
+                    nonEmptyRows++;
+                }
+            }
+        }
+
+        int[] data(int row) {
+            int[] override = changed.isEmpty() ? null : changed.get(row);
+            return override != null ? override : indices;
+        }
+
+        int start(int row) {
+            if (!changed.isEmpty() && changed.containsKey(row)) {
+                return 0;
+            }
+            return row < offsets.length - 1 ? offsets[row] : 0;
+        }
+
+        int end(int row) {
+            int[] override = changed.isEmpty() ? null : changed.get(row);
+            if (override != null) {
+                return override.length;
+            }
+            return row < offsets.length - 1 ? offsets[row + 1] : 0;
+        }
+
+        int size(int row) {
+            return end(row) - start(row);
+        }
+
+        int maxRow() {
+            return maxRow;
+        }
+
+        int nonEmptyRows() {
+            return nonEmptyRows;
+        }
+
+        int[] row(int row) {
+            return Arrays.copyOfRange(data(row), start(row), end(row));
+        }
+
+        boolean add(int row, int column) {
+            int[] current = row(row);
+            int position = Arrays.binarySearch(current, column);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            int[] updated = new int[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, position);
+            updated[position] = column;
+            System.arraycopy(current, position, updated, position + 1, current.length - position);
+            put(row, updated);
+            return true;
+        }
+
+        boolean remove(int row, int column) {
+            int[] current = row(row);
+            int position = Arrays.binarySearch(current, column);
+            if (position < 0) {
+                return false;
+            }
+            int[] updated = new int[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, position);
+            System.arraycopy(current, position + 1, updated, position, current.length - position - 1);
+            put(row, updated);
+            return true;
+        }
+
+        void clearRow(int row) {
+            if (size(row) > 0) {
+                put(row, EMPTY);
+            }
+        }
+
+        private void put(int row, int[] values) {
+            boolean wasEmpty = size(row) == 0;
+            if (wasEmpty != (values.length == 0)) {
+                nonEmptyRows += wasEmpty ? 1 : -1;
+            }
+            changed.put(row, values);
+            maxRow = Math.max(maxRow, row);
+            if (changed.size() > Math.max(MIN_COMPACT_THRESHOLD, (offsets.length - 1) / 16)) {
+                compact();
+            }
+        }
+
+        private void compact() {
+            Csr merged = copy();
+            offsets = merged.offsets();
+            indices = merged.indices();
+            changed.clear();
+        }
+
+        Csr copy() {
+            int[] newOffsets = new int[maxRow + 2];
+            for (int row = 0; row <= maxRow; row++) {
+                newOffsets[row + 1] = newOffsets[row] + size(row);
+            }
+            int[] newIndices = new int[newOffsets[maxRow + 1]];
+            for (int row = 0; row <= maxRow; row++) {
+                System.arraycopy(data(row), start(row), newIndices, newOffsets[row], size(row));
+            }
+            return new Csr(newOffsets, newIndices);
+        }
+    }
+}
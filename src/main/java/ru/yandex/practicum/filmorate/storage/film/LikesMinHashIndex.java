@@ -0,0 +1,297 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * MinHash-сигнатуры множеств лайкнутых фильмов и LSH-корзины по полосам сигнатуры.
+ * Пользователи, совпавшие с заданным хотя бы в одной полосе, — кандидаты в соседи: вероятность попасть
+ * в кандидаты растёт с коэффициентом Жаккара, а просматривать всех пользователей не нужно.
+ * Точное сходство кандидатов затем считает LikesMatrix.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikesMinHashIndex {
+
+    static final int BANDS = 64;
+    static final int ROWS = 2;
+    private static final int HASHES = BANDS * ROWS;
+    private static final long PRIME = Integer.MAX_VALUE;
+    private static final long SEED = 20240501L;
+    private static final int[] EMPTY = new int[0];
+
+    // Хеш-функции вида (a * x + b) mod p с фиксированным зерном, чтобы сигнатуры не зависели от запуска
+    private static final long[] A = new long[HASHES];
+    private static final long[] B = new long[HASHES];
+
+    static {
+        Random random = new Random(SEED);
+        for (int i = 0; i < HASHES; i++) {
+            A[i] = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+            B[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+    }
+
+    private final LikesMatrix likesMatrix;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private BandTable[] bands = newBands();
+
+    // После LikesMatrix — она внедрена в конструктор и уже построена — и до приёма запросов
+    @PostConstruct
+    public void rebuild() {
+        long start = System.nanoTime();
+        LikesMatrix.Csr filmsByUser = likesMatrix.snapshot().filmsByUser();
+
+        lock.writeLock().lock();
+        try {
+            signatures.clear();
+            bands = newBands();
+            for (int userId = 0; userId < filmsByUser.rows(); userId++) {
+                if (filmsByUser.size(userId) > 0) {
+                    int[] signature = signature(filmsByUser.indices(), filmsByUser.start(userId),
+                            filmsByUser.end(userId));
+                    signatures.put(userId, signature);
+                    addToBands(userId, signature, 0);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("MinHash-индекс лайков построен, пользователей: {}, за {} мс",
+                signatures.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Новый лайк может только уменьшить минимумы — пересчитывать сигнатуру целиком не нужно
+    public void addLike(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            int[] current = signatures.get(userId);
+            int[] updated = current == null ? signature(new int[]{filmId}, 0, 1) : current.clone();
+            if (current != null) {
+                for (int i = 0; i < HASHES; i++) {
+                    updated[i] = Math.min(updated[i], hash(i, filmId));
+                }
+            }
+            replace(userId, current, updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // После удаления лайка минимум мог уйти вместе с ним, поэтому сигнатура строится заново по матрице.
+    // Строка матрицы читается под блокировкой индекса: лайк, попавший в матрицу позже, дождётся её
+    // в addLike и не потеряется при замене сигнатуры
+    public void refreshUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            int[] films = likesMatrix.likedFilms(userId);
+            replace(userId, signatures.get(userId), films.length == 0 ? null : signature(films, 0, films.length));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            replace(userId, signatures.get(userId), null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Пользователи, совпавшие с заданным хотя бы в одной полосе сигнатуры, по возрастанию id
+    public int[] candidates(int userId) {
+        lock.readLock().lock();
+        try {
+            int[] signature = signatures.get(userId);
+            if (signature == null) {
+                return EMPTY;
+            }
+            int[] found = new int[64];
+            int count = 0;
+            for (int band = 0; band < BANDS; band++) {
+                BandTable table = bands[band];
+                int key = bandKey(signature, band);
+                for (int other = table.first(key); other >= 0; other = table.next(other, key)) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = other;
+                }
+            }
+            Arrays.sort(found, 0, count);
+
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (found[i] != userId && (distinct == 0 || found[distinct - 1] != found[i])) {
+                    found[distinct++] = found[i];
+                }
+            }
+            return Arrays.copyOf(found, distinct);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void replace(int userId, int[] current, int[] updated) {
+        int firstChanged = 0;
+        if (current != null) {
+            firstChanged = updated == null ? 0 : firstChangedBand(current, updated);
+            for (int band = firstChanged; band < BANDS; band++) {
+                bands[band].remove(userId);
+            }
+        }
+        if (updated == null) {
+            signatures.remove(userId);
+            return;
+        }
+        signatures.put(userId, updated);
+        addToBands(userId, updated, firstChanged);
+    }
+
+    private void addToBands(int userId, int[] signature, int fromBand) {
+        for (int band = fromBand; band < BANDS; band++) {
+            bands[band].add(userId, bandKey(signature, band));
+        }
+    }
+
+    // Полосы до первой изменённой остаются на месте; остальные перекладываются, даже если совпали
+    private static int firstChangedBand(int[] current, int[] updated) {
+        for (int i = 0; i < HASHES; i++) {
+            if (current[i] != updated[i]) {
+                return i / ROWS;
+            }
+        }
+        return BANDS;
+    }
+
+    private static BandTable[] newBands() {
+        BandTable[] tables = new BandTable[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            tables[band] = new BandTable();
+        }
+        return tables;
+    }
+
+    private static int[] signature(int[] films, int from, int to) {
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int i = from; i < to; i++) {
+            for (int h = 0; h < HASHES; h++) {
+                signature[h] = Math.min(signature[h], hash(h, films[i]));
+            }
+        }
+        return signature;
+    }
+
+    private static int hash(int function, int filmId) {
+        return (int) ((A[function] * filmId + B[function]) % PRIME);
+    }
+
+    // Редкие совпадения ключей разных корзин дают лишних кандидатов, которых отсеет точный подсчёт
+    private static int bandKey(int[] signature, int band) {
+        int key = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            key = key * 0x9E3779B1 + signature[i];
+        }
+        return key;
+    }
+
+    /**
+     * Корзины одной полосы: хеш-таблица с цепочками на массивах. Слот хранит первого пользователя цепочки,
+     * next — следующего, keys — ключ полосы каждого пользователя. В слоте могут оказаться разные ключи,
+     * поэтому при обходе цепочки ключ сверяется. Объектов на пользователя не создаётся.
+     */
+    private static final class BandTable {
+
+        private int[] heads = emptyHeads(1024);
+        private int[] next = EMPTY;
+        private int[] keys = EMPTY;
+        private int size;
+
+        void add(int userId, int key) {
+            if (userId >= next.length) {
+                int length = Math.max(userId + 1, next.length * 2);
+                next = Arrays.copyOf(next, length);
+                keys = Arrays.copyOf(keys, length);
+            }
+            keys[userId] = key;
+            link(userId);
+            if (++size > heads.length) {
+                rehash();
+            }
+        }
+
+        void remove(int userId) {
+            int slot = slot(keys[userId], heads.length);
+            int previous = -1;
+            for (int user = heads[slot]; user >= 0; previous = user, user = next[user]) {
+                if (user == userId) {
+                    if (previous < 0) {
+                        heads[slot] = next[user];
+                    } else {
+                        next[previous] = next[user];
+                    }
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        int first(int key) {
+            return skipTo(heads[slot(key, heads.length)], key);
+        }
+
+        int next(int userId, int key) {
+            return skipTo(next[userId], key);
+        }
+
+        private int skipTo(int user, int key) {
+            while (user >= 0 && keys[user] != key) {
+                user = next[user];
+            }
+            return user;
+        }
+
+        private void link(int userId) {
+            int slot = slot(keys[userId], heads.length);
+            next[userId] = heads[slot];
+            heads[slot] = userId;
+        }
+
+        private void rehash() {
+            int[] old = heads;
+            heads = emptyHeads(old.length * 2);
+            for (int head : old) {
+                for (int user = head; user >= 0; ) {
+                    int following = next[user];
+                    link(user);
+                    user = following;
+                }
+            }
+        }
+
+        private static int slot(int key, int length) {
+            return (key ^ key >>> 16) & (length - 1);
+        }
+
+        private static int[] emptyHeads(int length) {
+            int[] heads = new int[length];
+            Arrays.fill(heads, -1);
+            return heads;
+        }
+    }
+}
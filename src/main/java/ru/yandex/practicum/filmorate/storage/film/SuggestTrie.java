@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Suggestion;
+
+import java.util.*;
+
+/**
+ * Сжатый префиксный (radix) трай для автодополнения. Каждый узел хранит максимальный вес в поддереве,
+ * поэтому топ-K по префиксу находится обходом «лучший-первым» без просмотра всех completions.
+ * Каждая запись индексируется по полному названию и по каждому слову внутри него.
+ * Класс не потокобезопасен — синхронизацию обеспечивает владелец (FilmSearchIndex).
+ */
+class SuggestTrie {
+
+    private static final Comparator<Record> BY_WEIGHT = Comparator
+            .comparingInt((Record record) -> record.weight).reversed()
+            .thenComparing(record -> record.type)
+            .thenComparingInt(record -> record.id);
+
+    private final Node root = new Node("");
+    private final Map<Long, Record> records = new HashMap<>();
+
+    void put(Suggestion.Type type, int id, String name, int weight) {
+        remove(type, id);
+        Record record = new Record(type, id, name, weight);
+        records.put(record.key(), record);
+        for (String key : keys(name)) {
+            insert(key, record);
+        }
+    }
+
+    void remove(Suggestion.Type type, int id) {
+        Record record = records.remove(key(type, id));
+        if (record != null) {
+            for (String key : keys(record.name)) {
+                delete(key, record);
+            }
+        }
+    }
+
+    void updateWeight(Suggestion.Type type, int id, int weight) {
+        Record record = records.get(key(type, id));
+        if (record != null && record.weight != weight) {
+            put(type, id, record.name, weight);
+        }
+    }
+
+    void clear() {
+        root.children.clear();
+        root.records.clear();
+        root.maxWeight = Integer.MIN_VALUE;
+        records.clear();
+    }
+
+    List<Suggestion> complete(String prefix, int limit) {
+        Node start = find(FilmSearchIndex.normalize(prefix));
+        if (start == null || limit <= 0) {
+            return List.of();
+        }
+
+        PriorityQueue<Node> frontier = new PriorityQueue<>(
+                Comparator.comparingInt((Node node) -> node.maxWeight).reversed());
+        PriorityQueue<Record> ready = new PriorityQueue<>(BY_WEIGHT);
+        Set<Long> seen = new HashSet<>();
+        List<Suggestion> result = new ArrayList<>(limit);
+        frontier.add(start);
+
+        while (result.size() < limit && (!frontier.isEmpty() || !ready.isEmpty())) {
+            // Запись можно отдавать, когда в непросмотренных узлах нет ничего тяжелее неё
+            if (!ready.isEmpty() && (frontier.isEmpty() || ready.peek().weight >= frontier.peek().maxWeight)) {
+                Record record = ready.poll();
+                if (seen.add(record.key())) {
+                    result.add(record.toSuggestion());
+                }
+                continue;
+            }
+
+            Node node = frontier.poll();
+            ready.addAll(node.records);
+            frontier.addAll(node.children.values());
+        }
+        return result;
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            Node child = node.children.get(prefix.charAt(position));
+            if (child == null) {
+                return null;
+            }
+            int common = commonPrefix(child.label, prefix, position);
+            if (position + common == prefix.length()) {
+                return child;
+            }
+            if (common < child.label.length()) {
+                return null;
+            }
+            position += common;
+            node = child;
+        }
+        return node;
+    }
+
+    private void insert(String key, Record record) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        path.push(node);
+        int position = 0;
+
+        while (position < key.length()) {
+            char first = key.charAt(position);
+            Node child = node.children.get(first);
+            if (child == null) {
+                child = new Node(key.substring(position));
+                node.children.put(first, child);
+                node = child;
+                path.push(node);
+                break;
+            }
+
+            int common = commonPrefix(child.label, key, position);
+            if (common < child.label.length()) {
+                // Разбиваем ребро: общая часть становится промежуточным узлом
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children.put(child.label.charAt(0), child);
+                split.maxWeight = child.maxWeight;
+                node.children.put(first, split);
+                child = split;
+            }
+            node = child;
+            path.push(node);
+            position += common;
+        }
+
+        node.records.add(record);
+        recomputeWeights(path);
+    }
+
+    private void delete(String key, Record record) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        path.push(node);
+        int position = 0;
+
+        while (position < key.length()) {
+            Node child = node.children.get(key.charAt(position));
+            if (child == null || !key.startsWith(child.label, position)) {
+                return;
+            }
+            node = child;
+            path.push(node);
+            position += child.label.length();
+        }
+
+        node.records.remove(record);
+        recomputeWeights(path);
+        prune(path);
+    }
+
+    private static void recomputeWeights(Deque<Node> path) {
+        for (Node node : path) {
+            int max = Integer.MIN_VALUE;
+            for (Record record : node.records) {
+                max = Math.max(max, record.weight);
+            }
+            for (Node child : node.children.values()) {
+                max = Math.max(max, child.maxWeight);
+            }
+            node.maxWeight = max;
+        }
+    }
+
+    private static void prune(Deque<Node> path) {
+        Iterator<Node> iterator = path.iterator();
+        Node node = iterator.next();
+        while (iterator.hasNext()) {
+            Node parent = iterator.next();
+            if (!node.records.isEmpty() || !node.children.isEmpty()) {
+                return;
+            }
+            parent.children.remove(node.label.charAt(0));
+            node = parent;
+        }
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // Полное название и каждое слово внутри него, чтобы «чтиво» находило «Криминальное чтиво»
+    private static Set<String> keys(String name) {
+        String normalized = FilmSearchIndex.normalize(name);
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(normalized);
+        for (int i = 1; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i))
+                    && !Character.isLetterOrDigit(normalized.charAt(i - 1))) {
+                keys.add(normalized.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    private static long key(Suggestion.Type type, int id) {
+        return ((long) type.ordinal() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static final class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>(2);
+        private final List<Record> records = new ArrayList<>(1);
+        private int maxWeight = Integer.MIN_VALUE;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private record Record(Suggestion.Type type, int id, String name, int weight) {
+
+        long key() {
+            return SuggestTrie.key(type, id);
+        }
+
+        Suggestion toSuggestion() {
+            return new Suggestion(type, id, name, weight);
+        }
+    }
+}
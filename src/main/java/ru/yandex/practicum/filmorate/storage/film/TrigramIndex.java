@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.*;
+
+/**
+ * Триграммный индекс строк по целочисленному ключу. Постинги хранятся отсортированными массивами int,
+ * поэтому подстрочный поиск сводится к пересечению нескольких коротких списков.
+ * Класс не потокобезопасен — синхронизацию обеспечивает владелец (FilmSearchIndex).
+ */
+class TrigramIndex {
+
+    private final Map<Integer, String> texts = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    void put(int id, String normalizedText) {
+        remove(id);
+        texts.put(id, normalizedText);
+        for (long trigram : trigrams(pad(normalizedText))) {
+            postings.computeIfAbsent(trigram, k -> new Postings()).add(id);
+        }
+    }
+
+    void remove(int id) {
+        String previous = texts.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (long trigram : trigrams(pad(previous))) {
+            Postings list = postings.get(trigram);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    void clear() {
+        texts.clear();
+        postings.clear();
+    }
+
+    String get(int id) {
+        return texts.get(id);
+    }
+
+    int size() {
+        return texts.size();
+    }
+
+    // Ключи, тексты которых содержат query как подстроку (семантика LIKE '%q%')
+    Set<Integer> containing(String query) {
+        Set<Integer> result = new HashSet<>();
+        Set<Long> queryTrigrams = trigrams(query);
+
+        if (queryTrigrams.isEmpty()) {
+            // Запрос короче триграммы — постинги не помогают, проверяем все строки
+            texts.forEach((id, text) -> {
+                if (text.contains(query)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+
+        List<Postings> lists = new ArrayList<>(queryTrigrams.size());
+        for (long trigram : queryTrigrams) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                return result;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        Postings smallest = lists.getFirst();
+        for (int i = 0; i < smallest.size; i++) {
+            int id = smallest.ids[i];
+            boolean inAll = true;
+            for (int j = 1; j < lists.size() && inAll; j++) {
+                inAll = lists.get(j).contains(id);
+            }
+            if (inAll && texts.get(id).contains(query)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    // Нечёткий поиск: доля триграмм запроса, найденных в строке, не ниже порога
+    Map<Integer, Double> similar(String query, double threshold) {
+        Set<Long> queryTrigrams = trigrams(pad(query));
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (long trigram : queryTrigrams) {
+            Postings list = postings.get(trigram);
+            if (list != null) {
+                for (int i = 0; i < list.size; i++) {
+                    shared.merge(list.ids[i], 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<Integer, Double> result = new HashMap<>();
+        shared.forEach((id, count) -> {
+            double similarity = (double) count / queryTrigrams.size();
+            if (similarity >= threshold) {
+                result.put(id, similarity);
+            }
+        });
+        return result;
+    }
+
+    // Приблизительный объём занимаемой памяти (64-битная JVM со сжатыми указателями)
+    long estimateFootprintBytes() {
+        long bytes = 0;
+        for (String text : texts.values()) {
+            // Узел HashMap + Integer + String + массив символов
+            bytes += 32 + 16 + 24 + 16 + (long) text.length() * (isLatin1(text) ? 1 : 2);
+        }
+        for (Postings list : postings.values()) {
+            // Узел HashMap + Long + объект Postings + массив int
+            bytes += 32 + 24 + 24 + 16 + 4L * list.ids.length;
+        }
+        bytes += 4L * (tableSize(texts.size()) + tableSize(postings.size()));
+        return bytes;
+    }
+
+    int trigramCount() {
+        return postings.size();
+    }
+
+    private static boolean isLatin1(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int tableSize(int entries) {
+        return Integer.highestOneBit(Math.max(1, (int) (entries / 0.75f)) * 2 - 1);
+    }
+
+    private static String pad(String text) {
+        return " " + text + " ";
+    }
+
+    private static Set<Long> trigrams(String text) {
+        Set<Long> result = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return result;
+    }
+
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class RecommendationDbStorage implements RecommendationStorage {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public void saveAll(Map<Integer, List<Integer>> filmIdsByUser, Instant computedAt) {
+        Timestamp timestamp = Timestamp.from(computedAt);
+        List<Object[]> batchArgs = new ArrayList<>();
+        filmIdsByUser.forEach((userId, filmIds) ->
+                batchArgs.add(new Object[]{userId, filmIds.toArray(Integer[]::new), timestamp}));
+        // Строку, у которой лайки менялись не раньше начала расчёта, не трогаем: список посчитан по старым лайкам
+        jdbcTemplate.batchUpdate("""
+                MERGE INTO user_recommendations r
+                USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER ARRAY), CAST(? AS TIMESTAMP(9))))
+                    AS s (user_id, film_ids, computed_at)
+                ON r.user_id = s.user_id
+                WHEN MATCHED AND (r.likes_changed_at IS NULL OR r.likes_changed_at < s.computed_at) THEN
+                    UPDATE SET film_ids = s.film_ids, computed_at = s.computed_at
+                WHEN NOT MATCHED THEN
+                    INSERT (user_id, film_ids, computed_at) VALUES (s.user_id, s.film_ids, s.computed_at)
+                """, batchArgs);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<List<Integer>> findFresh(Integer userId, Instant computedAfter) {
+        String sql = """
+                SELECT film_ids
+                FROM user_recommendations
+                WHERE user_id = ? AND computed_at >= ?
+                """;
+        return jdbcTemplate.query(sql, this::mapRowToFilmIds, userId, Timestamp.from(computedAfter))
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    @Transactional
+    public void markLikesChanged(Integer userId) {
+        jdbcTemplate.update("""
+                MERGE INTO user_recommendations (user_id, film_ids, computed_at, likes_changed_at)
+                KEY (user_id)
+                VALUES (?, NULL, NULL, ?)
+                """, userId, Timestamp.from(Instant.now()));
+        log.debug("Сброшены сохранённые рекомендации пользователя с ID: {}", userId);
+    }
+
+    private List<Integer> mapRowToFilmIds(ResultSet rs, int rowNum) throws SQLException {
+        Array array = rs.getArray("film_ids");
+        try {
+            List<Integer> filmIds = new ArrayList<>();
+            for (Object filmId : (Object[]) array.getArray()) {
+                filmIds.add((Integer) filmId);
+            }
+            return List.copyOf(filmIds);
+        } finally {
+            array.free();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface RecommendationStorage {
+
+    // Заменяет сохранённые рекомендации перечисленных пользователей; списки фильмов — в порядке ранга.
+    // Пользователей, чьи лайки менялись после начала расчёта computedAt, пропускает
+    void saveAll(Map<Integer, List<Integer>> filmIdsByUser, Instant computedAt);
+
+    // Пусто, если расчёта для пользователя не было или он сделан раньше computedAfter
+    Optional<List<Integer>> findFresh(Integer userId, Instant computedAfter);
+
+    // Стирает рекомендации пользователя и запоминает время изменения его лайков
+    void markLikesChanged(Integer userId);
+}
@@ -10,6 +10,7 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
 
 import java.sql.*;
 import java.time.LocalDateTime;
@@ -23,6 +24,7 @@ import java.util.stream.Collectors;
 public class ReviewDbStorage implements ReviewStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final IdBatchLoader idBatchLoader;
 
     @Override
     @Transactional(readOnly = true)
@@ -205,19 +207,12 @@ public class ReviewDbStorage implements ReviewStorage {
                 .map(Review::getReviewId)
                 .collect(Collectors.toList());
 
-        String placeholders = reviewIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(", "));
-
-        String sql = String.format(
-                "SELECT review_id, user_id, is_like FROM review_likes WHERE review_id IN (%s)",
-                placeholders
-        );
+        String sql = "SELECT review_id, user_id, is_like FROM review_likes WHERE review_id " + IdBatchLoader.IDS;
 
         Map<Integer, Review> reviewMap = reviews.stream()
                 .collect(Collectors.toMap(Review::getReviewId, r -> r));
 
-        jdbcTemplate.query(sql, reviewIds.toArray(), rs -> {
+        idBatchLoader.query(sql, reviewIds, rs -> {
             Integer reviewId = rs.getInt("review_id");
             Integer userId = rs.getInt("user_id");
             Boolean isLike = rs.getBoolean("is_like");
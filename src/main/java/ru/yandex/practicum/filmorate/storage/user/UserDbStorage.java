@@ -10,13 +10,18 @@ import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.IntSet;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
+import ru.yandex.practicum.filmorate.storage.IdPresenceCache;
 
+import java.sql.Array;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -25,7 +30,15 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
 
+    private static final int STREAM_FETCH_SIZE = 256;
+
+    // Краткое представление: число друзей считается по индексу friendships без выборки самих id
+    private static final String FRIEND_COUNT_COLUMN =
+            "(SELECT COUNT(*) FROM friendships fr WHERE fr.user_id = u.id) AS friend_count\n";
+
     private final JdbcTemplate jdbcTemplate;
+    private final IdBatchLoader idBatchLoader;
+    private final IdPresenceCache knownIds = new IdPresenceCache();
 
     @Override
     @Transactional(readOnly = true)
@@ -40,6 +53,48 @@ public class UserDbStorage implements UserStorage {
         return users;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsers(int afterId, Integer limit, boolean withFriends, Consumer<User> consumer) {
+        // Друзья приходят массивом в той же строке, поэтому каждый пользователь готов сразу после чтения строки
+        String sql = "SELECT u.*, " + (withFriends ? """
+                       ARRAY(SELECT fr.friend_id FROM friendships fr
+                             WHERE fr.user_id = u.id ORDER BY fr.friend_id) AS friend_ids
+                """ : FRIEND_COUNT_COLUMN) + """
+                FROM users u
+                WHERE u.id > ?
+                ORDER BY u.id
+                """ + (limit != null ? " LIMIT ?" : "");
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            stmt.setInt(1, afterId);
+            if (limit != null) {
+                stmt.setInt(2, limit);
+            }
+            return stmt;
+        }, rs -> {
+            if (!withFriends) {
+                consumer.accept(mapRowToUserSummary(rs, rs.getRow()));
+                return;
+            }
+            User user = mapRowToUser(rs, rs.getRow());
+            Array friendIds = rs.getArray("friend_ids");
+            try {
+                Object[] ids = (Object[]) friendIds.getArray();
+                int[] friends = new int[ids.length];
+                for (int i = 0; i < friends.length; i++) {
+                    friends[i] = (Integer) ids[i];
+                }
+                user.setFriends(IntSet.wrap(friends));
+            } finally {
+                friendIds.free();
+            }
+            consumer.accept(user);
+        });
+    }
+
     @Override
     @Transactional
     public User create(User user) {
@@ -59,6 +114,7 @@ public class UserDbStorage implements UserStorage {
 
             Integer id = Objects.requireNonNull(keyHolder.getKey()).intValue();
             user.setId(id);
+            knownIds.add(id);
             log.info("Создан пользователь с ID: {}", id);
             return user;
         } catch (DataAccessException e) {
@@ -108,10 +164,31 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    // Проверки существования для валидации: без загрузки списка друзей
+    @Override
+    public boolean existsById(Integer id) {
+        return knownIds.exists(id, userId -> Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)", Boolean.class, userId)));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Integer> ids) {
+        return knownIds.existsAll(ids, unknown -> idBatchLoader.query(
+                "SELECT id FROM users WHERE id " + IdBatchLoader.IDS, unknown, (rs, rowNum) -> rs.getInt("id")));
+    }
+
     @Override
     @Transactional
     public void delete(Integer id) {
+        knownIds.evict(id);
         try {
+            // Лайки пользователя удалятся каскадно, поэтому заранее уменьшаем счётчики фильмов
+            String likeCountSql = """
+                    UPDATE films SET like_count = like_count - 1
+                    WHERE id IN (SELECT film_id FROM likes WHERE user_id = ?)
+                    """;
+            jdbcTemplate.update(likeCountSql, id);
+
             String sql = "DELETE FROM users WHERE id = ?";
             int deleted = jdbcTemplate.update(sql, id);
 
@@ -166,15 +243,18 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     @Transactional(readOnly = true)
-    public List<User> getFriends(Integer userId) {
+    public List<User> getFriends(Integer userId, boolean withFriends) {
         String sql = """
-        SELECT u.*
+        SELECT u.*%s
         FROM users u
         JOIN friendships f ON u.id = f.friend_id
         WHERE f.user_id = ?
         ORDER BY u.id
-        """;
+        """.formatted(withFriends ? "" : ", " + FRIEND_COUNT_COLUMN);
 
+        if (!withFriends) {
+            return jdbcTemplate.query(sql, this::mapRowToUserSummary, userId);
+        }
         List<User> friends = jdbcTemplate.query(sql, this::mapRowToUser, userId);
 
         if (!friends.isEmpty()) {
@@ -186,15 +266,18 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     @Transactional(readOnly = true)
-    public List<User> getCommonFriends(Integer userId, Integer otherUserId) {
+    public List<User> getCommonFriends(Integer userId, Integer otherUserId, boolean withFriends) {
         String sql = """
-            SELECT u.* FROM users u
+            SELECT u.*%s FROM users u
             JOIN friendships f1 ON u.id = f1.friend_id
             JOIN friendships f2 ON u.id = f2.friend_id
             WHERE f1.user_id = ? AND f2.user_id = ?
             ORDER BY u.id
-            """;
+            """.formatted(withFriends ? "" : ", " + FRIEND_COUNT_COLUMN);
 
+        if (!withFriends) {
+            return jdbcTemplate.query(sql, this::mapRowToUserSummary, userId, otherUserId);
+        }
         List<User> commonFriends = jdbcTemplate.query(sql, this::mapRowToUser, userId, otherUserId);
 
         if (!commonFriends.isEmpty()) {
@@ -228,7 +311,13 @@ public class UserDbStorage implements UserStorage {
         user.setLogin(rs.getString("login"));
         user.setName(rs.getString("name"));
         user.setBirthday(rs.getDate("birthday").toLocalDate());
-        user.setFriends(new HashSet<>());
+        return user;
+    }
+
+    private User mapRowToUserSummary(ResultSet rs, int rowNum) throws SQLException {
+        User user = mapRowToUser(rs, rowNum);
+        user.setFriends(null);
+        user.setFriendCount(rs.getInt("friend_count"));
         return user;
     }
 
@@ -241,57 +330,30 @@ public class UserDbStorage implements UserStorage {
                 .map(User::getId)
                 .collect(Collectors.toList());
 
-        String placeholders = userIds.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(", "));
-
-        String sql = String.format("""
+        String sql = """
             SELECT user_id, friend_id
             FROM friendships
-            WHERE user_id IN (%s)
-            ORDER BY user_id
-            """, placeholders);
-
-        Map<Integer, List<Integer>> friendsByUserId = jdbcTemplate.query(sql, userIds.toArray(), rs -> {
-            Map<Integer, List<Integer>> result = new HashMap<>();
-            while (rs.next()) {
-                Integer userId = rs.getInt("user_id");
-                Integer friendId = rs.getInt("friend_id");
-                result.computeIfAbsent(userId, k -> new ArrayList<>()).add(friendId);
-            }
-            return result;
+            WHERE user_id %s
+            ORDER BY user_id, friend_id
+            """.formatted(IdBatchLoader.IDS);
+
+        // Друзья приходят по возрастанию id, поэтому каждое добавление дописывает в конец массива
+        Map<Integer, IntSet> friendsByUserId = new HashMap<>();
+        idBatchLoader.query(sql, userIds, rs -> {
+            friendsByUserId.computeIfAbsent(rs.getInt("user_id"), k -> new IntSet()).add(rs.getInt("friend_id"));
         });
 
         for (User user : users) {
-            List<Integer> friendIds = friendsByUserId.getOrDefault(user.getId(), new ArrayList<>());
-            user.setFriends(new HashSet<>(friendIds));
+            user.setFriends(friendsByUserId.getOrDefault(user.getId(), new IntSet()));
         }
     }
 
     private void loadFriendsForSingleUser(User user) {
-        String sql = "SELECT friend_id FROM friendships WHERE user_id = ?";
-        List<Integer> friendIds = jdbcTemplate.queryForList(sql, Integer.class, user.getId());
-        user.setFriends(new HashSet<>(friendIds));
-    }
-
-    @Override
-    @Transactional(readOnly = true)
-    public Integer findMostSimilarUser(Integer userId) {
-        String sql = """
-                SELECT l2.user_id
-                FROM likes l1
-                JOIN likes l2 ON l1.film_id = l2.film_id
-                WHERE l1.user_id = ?
-                  AND l2.user_id != ?
-                GROUP BY l2.user_id
-                ORDER BY COUNT(*) DESC
-                LIMIT 1
-                """;
-
-        try {
-            return jdbcTemplate.queryForObject(sql, Integer.class, userId, userId);
-        } catch (EmptyResultDataAccessException e) {
-            return null; // Нет похожих пользователей
-        }
+        String sql = "SELECT friend_id FROM friendships WHERE user_id = ? ORDER BY friend_id";
+        IntSet friends = new IntSet();
+        jdbcTemplate.query(sql, rs -> {
+            friends.add(rs.getInt("friend_id"));
+        }, user.getId());
+        user.setFriends(friends);
     }
 }
\ No newline at end of file
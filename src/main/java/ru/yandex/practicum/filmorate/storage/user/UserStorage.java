@@ -3,14 +3,21 @@ package ru.yandex.practicum.filmorate.storage.user;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     @Transactional(readOnly = true)
     List<User> findAll();
 
+    // Пользователи с id > afterId по возрастанию id, по одному из курсора; limit == null — до конца таблицы.
+    // withFriends == false — краткое представление: вместо списка друзей только их число
+    @Transactional(readOnly = true)
+    void streamUsers(int afterId, Integer limit, boolean withFriends, Consumer<User> consumer);
+
     @Transactional
     User create(User user);
 
@@ -20,6 +27,10 @@ public interface UserStorage {
     @Transactional(readOnly = true)
     Optional<User> findById(Integer id);
 
+    boolean existsById(Integer id);
+
+    boolean existsAll(Collection<Integer> ids);
+
     @Transactional
     void delete(Integer id);
 
@@ -30,7 +41,12 @@ public interface UserStorage {
     void removeFriend(Integer userId, Integer friendId);
 
     @Transactional(readOnly = true)
-    List<User> getFriends(Integer userId);
+    default List<User> getFriends(Integer userId) {
+        return getFriends(userId, true);
+    }
+
+    @Transactional(readOnly = true)
+    List<User> getFriends(Integer userId, boolean withFriends);
 
     @Transactional(readOnly = true)
     default List<User> getAllFriends(Integer userId) {
@@ -38,8 +54,10 @@ public interface UserStorage {
     }
 
     @Transactional(readOnly = true)
-    List<User> getCommonFriends(Integer userId, Integer otherUserId);
+    default List<User> getCommonFriends(Integer userId, Integer otherUserId) {
+        return getCommonFriends(userId, otherUserId, true);
+    }
 
     @Transactional(readOnly = true)
-    Integer findMostSimilarUser(Integer userId);
+    List<User> getCommonFriends(Integer userId, Integer otherUserId, boolean withFriends);
 }
\ No newline at end of file
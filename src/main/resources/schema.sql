@@ -3,6 +3,9 @@ SET
 REFERENTIAL_INTEGRITY FALSE;
 
 -- Удаление таблиц в ПРАВИЛЬНОМ порядке (сначала зависимые, затем родительские)
+DROP TABLE IF EXISTS feed_outbox;
+DROP TABLE IF EXISTS feed_timeline;
+DROP TABLE IF EXISTS user_recommendations;
 DROP TABLE IF EXISTS review_likes;
 DROP TABLE IF EXISTS reviews;
 DROP TABLE IF EXISTS feed_events;
@@ -86,8 +89,12 @@ CREATE TABLE IF NOT EXISTS films
     name         VARCHAR(255) NOT NULL,
     description  VARCHAR(200),
     release_date DATE         NOT NULL,
+    -- Год релиза хранится отдельно, чтобы фильтр по году мог использовать индекс
+    release_year INTEGER GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date)),
     duration     INTEGER      NOT NULL,
-    mpa_id       INTEGER      REFERENCES mpa_ratings (id) ON DELETE SET NULL
+    mpa_id       INTEGER      REFERENCES mpa_ratings (id) ON DELETE SET NULL,
+    -- Денормализованный счётчик лайков, поддерживается FilmDbStorage.addLike/removeLike
+    like_count   INTEGER      DEFAULT 0 NOT NULL
     );
 
 -- 3. Таблицы связей (зависят от films, users, genres, director)
@@ -192,8 +199,36 @@ CREATE TABLE IF NOT EXISTS feed_events (
     event_type VARCHAR(10) NOT NULL CHECK (event_type IN ('LIKE', 'REVIEW', 'FRIEND')),
     operation VARCHAR(10) NOT NULL CHECK (operation IN ('ADD', 'REMOVE', 'UPDATE')),
     timestamp BIGINT NOT NULL,
-    -- Для оптимизации поиска событий пользователя
-    UNIQUE(user_id, event_id)
+    -- Для оптимизации поиска событий пользователя: по этому индексу идёт ключевая пагинация ленты
+    CONSTRAINT uq_feed_events_user_event UNIQUE (user_id, event_id)
+    );
+
+-- 6. Рекомендации, посчитанные ночным расчётом (зависит от users)
+-- Ранжированный список — одна строка на пользователя: чтение одним поиском по ключу, запись одной вставкой.
+-- Лайк стирает список и запоминает время изменения: расчёт, начатый раньше, строку уже не перезапишет
+CREATE TABLE IF NOT EXISTS user_recommendations
+(
+    user_id          INTEGER       PRIMARY KEY REFERENCES users (id) ON DELETE CASCADE,
+    film_ids         INTEGER ARRAY,
+    computed_at      TIMESTAMP(9),
+    likes_changed_at TIMESTAMP(9)
+    );
+
+-- 7. Ленты активности друзей: событие раскладывается подписчикам при записи (зависит от users и feed_events)
+-- Строка — ссылка на событие в ленте подписчика; лента ограничена последними событиями, старые подрезаются
+CREATE TABLE IF NOT EXISTS feed_timeline
+(
+    user_id  INTEGER NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    event_id INTEGER NOT NULL REFERENCES feed_events (event_id) ON DELETE CASCADE,
+    PRIMARY KEY (user_id, event_id)
+    );
+
+-- 8. Outbox событий ленты: строка пишется в одной транзакции с изменением данных и событием,
+-- фоновая рассылка раскладывает событие по лентам, уведомляет подписчиков и удаляет строку (зависит от feed_events)
+CREATE TABLE IF NOT EXISTS feed_outbox
+(
+    id       INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_id INTEGER NOT NULL REFERENCES feed_events (event_id) ON DELETE CASCADE
     );
 
 -- Сброс sequence для автоинкремента (ВАЖНО для тестов!)
@@ -210,8 +245,10 @@ ALTER TABLE feed_events
 
 -- Индексы для оптимизации запросов (оставлены без изменений)
 CREATE INDEX IF NOT EXISTS idx_films_mpa ON films (mpa_id);
+CREATE INDEX IF NOT EXISTS idx_films_like_count ON films (like_count DESC, id);
+CREATE INDEX IF NOT EXISTS idx_films_year_popularity ON films (release_year, like_count DESC, id);
 CREATE INDEX IF NOT EXISTS idx_film_genres_film ON film_genres (film_id);
-CREATE INDEX IF NOT EXISTS idx_film_genres_genre ON film_genres (genre_id);
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre ON film_genres (genre_id, film_id);
 CREATE INDEX IF NOT EXISTS idx_likes_film ON likes (film_id);
 CREATE INDEX IF NOT EXISTS idx_likes_user ON likes (user_id);
 CREATE INDEX IF NOT EXISTS idx_friendships_user ON friendships (user_id);
@@ -223,4 +260,6 @@ CREATE INDEX IF NOT EXISTS idx_review_likes_user ON review_likes(user_id);
 CREATE INDEX IF NOT EXISTS idx_reviews_created ON reviews(created_at);
 CREATE INDEX IF NOT EXISTS idx_feed_events_user ON feed_events(user_id);
 CREATE INDEX IF NOT EXISTS idx_feed_events_user_timestamp ON feed_events(user_id, timestamp DESC);
-CREATE INDEX IF NOT EXISTS idx_feed_events_timestamp ON feed_events(timestamp DESC);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_feed_events_timestamp ON feed_events(timestamp DESC);
+CREATE INDEX IF NOT EXISTS idx_feed_timeline_event ON feed_timeline(event_id);
+CREATE INDEX IF NOT EXISTS idx_feed_outbox_event ON feed_outbox(event_id);
\ No newline at end of file
@@ -8,11 +8,15 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.film.FilmSimilarityIndex;
 
 import java.time.LocalDate;
+import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -26,6 +30,9 @@ class FilmControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private FilmSimilarityIndex similarityIndex;
+
     private Film validFilm;
     private Film invalidFilm;
 
@@ -136,4 +143,103 @@ class FilmControllerTest {
         mockMvc.perform(get("/films"))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getAllFilms_WithCursor_ReturnsPageAfterGivenId() throws Exception {
+        int first = createFilm();
+        int second = createFilm();
+        int third = createFilm();
+
+        MvcResult result = mockMvc.perform(get("/films")
+                        .param("after", String.valueOf(first))
+                        .param("limit", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(second))
+                .andExpect(jsonPath("$[1].id").value(third))
+                .andExpect(jsonPath("$[0].mpa.name").value("G"));
+    }
+
+    @Test
+    void getAllFilms_AcceptNdjson_WritesOneFilmPerLine() throws Exception {
+        int first = createFilm();
+        int second = createFilm();
+
+        MvcResult result = mockMvc.perform(get("/films")
+                        .param("after", String.valueOf(first - 1))
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        List<Integer> ids = body.lines()
+                .map(line -> readFilm(line).getId())
+                .toList();
+        assertThat(ids).containsExactly(first, second);
+    }
+
+    @Test
+    void getAllFilms_NonPositiveLimit_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/films").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getSimilarFilms_ReturnsFilmsLikedTogether() throws Exception {
+        int film = createFilm();
+        int likedTogether = createFilm();
+        createFilm();
+        int userId = createUser();
+        mockMvc.perform(put("/films/{id}/like/{userId}", film, userId)).andExpect(status().isOk());
+        mockMvc.perform(put("/films/{id}/like/{userId}", likedTogether, userId)).andExpect(status().isOk());
+        similarityIndex.recompute();
+
+        mockMvc.perform(get("/films/{id}/similar", film))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(likedTogether));
+    }
+
+    @Test
+    void getSimilarFilms_UnknownFilm_ReturnsNotFound() throws Exception {
+        mockMvc.perform(get("/films/{id}/similar", 999_999))
+                .andExpect(status().isNotFound());
+    }
+
+    private int createUser() throws Exception {
+        String login = "similar" + System.nanoTime();
+        String response = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"email": "%s@mail.ru", "login": "%s", "birthday": "1990-01-01"}
+                                """.formatted(login, login)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("id").asInt();
+    }
+
+    private int createFilm() throws Exception {
+        String response = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validFilm)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return readFilm(response).getId();
+    }
+
+    private Film readFilm(String json) {
+        try {
+            return objectMapper.readValue(json, Film.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.feed.FeedOutboxRelay;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Задержка PUT /films/{id}/like/{userId} у пользователя с подписчиками: раскладка по лентам идёт в потоке outbox
+// после коммита и в задержку запроса не входит
+@Slf4j
+@SpringBootTest
+@AutoConfigureMockMvc
+class LikeLatencyTest {
+
+    private static final int LIKES = 300;
+    private static final int FOLLOWERS = 200;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FeedOutboxRelay feedOutboxRelay;
+
+    @Autowired
+    private FeedStorage feedStorage;
+
+    @Test
+    @Tag("benchmark")
+    void measureLikeLatency() throws Exception {
+        int firstUser = nextId("users");
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, login, name, birthday)
+                SELECT X, 'latency' || X || '@mail.ru', 'latency' || X, 'User ' || X, DATE '1990-01-01'
+                FROM SYSTEM_RANGE(?, ?)
+                """, firstUser, firstUser + FOLLOWERS);
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (firstUser + FOLLOWERS + 1));
+        jdbcTemplate.update("""
+                INSERT INTO friendships (user_id, friend_id)
+                SELECT X, ? FROM SYSTEM_RANGE(?, ?)
+                """, firstUser, firstUser + 1, firstUser + FOLLOWERS);
+        int firstFilm = nextId("films");
+        jdbcTemplate.update("""
+                INSERT INTO films (id, name, description, release_date, duration, mpa_id)
+                SELECT X, 'Latency ' || X, 'Description', DATE '2000-01-01', 100, 1
+                FROM SYSTEM_RANGE(?, ?)
+                """, firstFilm, firstFilm + LIKES - 1);
+        jdbcTemplate.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (firstFilm + LIKES));
+
+        long[] micros = new long[LIKES];
+        for (int i = 0; i < LIKES; i++) {
+            long start = System.nanoTime();
+            mockMvc.perform(put("/films/{id}/like/{userId}", firstFilm + i, firstUser))
+                    .andExpect(status().isOk());
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        feedOutboxRelay.relayPending();
+
+        assertThat(feedStorage.getUserFeed(firstUser))
+                .hasSize(LIKES)
+                .allMatch(event -> event.getEventType() == FeedEvent.EventType.LIKE);
+        assertThat(feedStorage.getTimeline(firstUser + 1, LIKES)).hasSize(100);
+
+        Arrays.sort(micros);
+        log.info("PUT /films/{id}/like/{userId} при {} подписчиках: медиана {} мкс, p90 {} мкс",
+                FOLLOWERS, micros[LIKES / 2], micros[LIKES * 9 / 10]);
+    }
+
+    private int nextId(String table) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Integer.class);
+    }
+}
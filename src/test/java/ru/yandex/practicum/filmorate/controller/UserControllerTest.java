@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,11 +9,13 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -140,4 +143,102 @@ class UserControllerTest {
         mockMvc.perform(get("/users"))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getAllUsers_WithCursor_StreamsUsersWithFriends() throws Exception {
+        int userId = createUser();
+        int friendId = createUser();
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", userId, friendId))
+                .andExpect(status().isOk());
+
+        MvcResult result = mockMvc.perform(get("/users")
+                        .param("after", String.valueOf(userId - 1))
+                        .param("limit", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(userId))
+                .andExpect(jsonPath("$[0].friends[0]").value(friendId))
+                .andExpect(jsonPath("$[1].id").value(friendId));
+    }
+
+    @Test
+    void getFeed_WithCursor_ReturnsPageBeforeEvent() throws Exception {
+        int userId = createUser();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(put("/users/{id}/friends/{friendId}", userId, createUser()))
+                    .andExpect(status().isOk());
+        }
+
+        MvcResult latest = mockMvc.perform(get("/users/{id}/feed", userId).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andReturn();
+        int firstEventId = JsonPath.read(latest.getResponse().getContentAsString(), "$[0].eventId");
+
+        mockMvc.perform(get("/users/{id}/feed", userId).param("before", String.valueOf(firstEventId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].eventId").value(firstEventId - 1));
+        mockMvc.perform(get("/users/{id}/feed", userId).param("all", "true").param("limit", "2"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamFeed_PushesEventsCommittedAfterSubscription() throws Exception {
+        int userId = createUser();
+        MvcResult stream = mockMvc.perform(get("/users/{id}/feed/stream", userId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        int friendId = createUser();
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", userId, friendId))
+                .andExpect(status().isOk());
+
+        String expected = "\"entityId\":" + friendId;
+        String body = "";
+        for (int i = 0; i < 500 && !body.contains(expected); i++) {
+            Thread.sleep(10);
+            body = stream.getResponse().getContentAsString();
+        }
+        assertThat(body).contains("event:feed").contains(expected);
+        mockMvc.perform(get("/users/{id}/feed/stream", Integer.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getFriends_InSummaryView_ReturnsFriendCountInsteadOfIds() throws Exception {
+        int userId = createUser();
+        int friendId = createUser();
+        int friendOfFriendId = createUser();
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", userId, friendId))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", friendId, friendOfFriendId))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/{id}/friends", userId).param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(friendId))
+                .andExpect(jsonPath("$[0].friendCount").value(1))
+                .andExpect(jsonPath("$[0].friends").doesNotExist());
+        mockMvc.perform(get("/users/{id}/friends", userId).param("view", "compact"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private int createUser() throws Exception {
+        User user = new User();
+        user.setEmail("stream" + UUID.randomUUID() + "@email.com");
+        user.setLogin("stream" + UUID.randomUUID().toString().substring(0, 8));
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+
+        String response = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, User.class).getId();
+    }
+}
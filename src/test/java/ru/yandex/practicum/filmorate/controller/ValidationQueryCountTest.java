@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.QueryCounter;
+import ru.yandex.practicum.filmorate.storage.feed.FeedOutboxRelay;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Валидация существования не должна загружать сущности целиком: считаем SQL-операторы на запрос
+@SpringBootTest
+@AutoConfigureMockMvc
+class ValidationQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FeedOutboxRelay feedOutboxRelay;
+
+    private QueryCounter queryCounter;
+    private Integer filmId;
+    private Integer userId;
+    private Integer otherUserId;
+
+    @BeforeEach
+    void setUp() {
+        queryCounter = new QueryCounter(jdbcTemplate).enable();
+
+        Film film = new Film();
+        film.setName("Фильм для проверки валидации");
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new MpaRating(1, null, null));
+        filmId = filmStorage.create(film).getId();
+        userId = userStorage.create(newUser()).getId();
+        otherUserId = userStorage.create(newUser()).getId();
+    }
+
+    @Test
+    void likeShouldNotLoadFilmOrUserForValidation() throws Exception {
+        queryCounter.reset();
+
+        mockMvc.perform(put("/films/{id}/like/{userId}", filmId, userId))
+                .andExpect(status().isOk());
+        feedOutboxRelay.relayPending();
+
+        // Одной транзакцией: вставка лайка, счётчик лайков, событие ленты, строка outbox и сброс рекомендаций
+        // ночного расчёта; загрузка фильма для ответа; рассылка: выборка outbox, подписчиков и удаление из outbox
+        assertThat(queryCounter.count()).isEqualTo(9);
+    }
+
+    @Test
+    void friendRequestShouldValidateBothUsersWithoutQueries() throws Exception {
+        queryCounter.reset();
+
+        mockMvc.perform(put("/users/{id}/friends/{friendId}", userId, otherUserId))
+                .andExpect(status().isOk());
+        feedOutboxRelay.relayPending();
+
+        // Только вставка дружбы, событие ленты и строка outbox; рассылка: выборка outbox, подписчиков
+        // и удаление из outbox
+        assertThat(queryCounter.count()).isEqualTo(6);
+    }
+
+    @Test
+    void feedShouldRunSingleQuery() throws Exception {
+        queryCounter.reset();
+
+        mockMvc.perform(get("/users/{id}/feed", userId))
+                .andExpect(status().isOk());
+
+        assertThat(queryCounter.count()).isEqualTo(1);
+    }
+
+    @Test
+    void unknownIdShouldBeCheckedWithSingleLightweightQuery() throws Exception {
+        queryCounter.reset();
+
+        mockMvc.perform(get("/users/{id}/feed", Integer.MAX_VALUE))
+                .andExpect(status().isNotFound());
+
+        assertThat(queryCounter.count()).isEqualTo(1);
+    }
+
+    private static User newUser() {
+        String login = "user" + UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntSetTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void shouldKeepValuesSortedAndUnique() {
+        IntSet set = IntSet.of(5, 1, 3, 5);
+
+        assertTrue(set.add(2));
+        assertFalse(set.add(3));
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(7));
+
+        assertArrayEquals(new int[]{2, 3, 5}, set.toIntArray());
+        assertTrue(set.contains(5));
+        assertFalse(set.contains((Object) "5"));
+        assertEquals(Set.of(2, 3, 5), set);
+    }
+
+    @Test
+    void shouldSerializeAsJsonArray() throws Exception {
+        User user = new User();
+        user.setId(1);
+        user.setEmail("user@mail.ru");
+        user.setLogin("user");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user.setFriends(IntSet.of(30, 10, 20));
+
+        String json = objectMapper.writeValueAsString(user);
+        User parsed = objectMapper.readValue(json, User.class);
+
+        assertTrue(json.contains("\"friends\":[10,20,30]"));
+        assertEquals(user.getFriends(), parsed.getFriends());
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedStreamHubTest {
+
+    private final FeedStreamHub hub = new FeedStreamHub(Executors.newVirtualThreadPerTaskExecutor(), 2, 60_000, 0);
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    @Test
+    void onEvents_ShouldStreamOnlyOwnEventsInOrder() throws Exception {
+        RecordingEmitter first = new RecordingEmitter(null);
+        RecordingEmitter second = new RecordingEmitter(null);
+        hub.subscribe(1, first);
+        hub.subscribe(2, second);
+
+        hub.onEvents(List.of(event(10, 1), event(11, 2), event(12, 1)));
+
+        assertThat(first.awaitData(2)).containsExactly(event(10, 1), event(12, 1));
+        assertThat(second.awaitData(1)).containsExactly(event(11, 2));
+    }
+
+    @Test
+    void slowSubscriber_ShouldBeToldToResyncWithoutBlockingWriter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(release);
+        hub.subscribe(1, slow);
+
+        hub.onEvents(List.of(event(10, 1)));
+        assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Отправка стоит на release, пока его не отпустит сам тест: onEvents возвращается, пока клиент
+        // ещё занят, — писатель его не ждёт
+        hub.onEvents(List.of(event(11, 1), event(12, 1), event(13, 1), event(14, 1)));
+        assertThat(slow.completed.getCount()).isEqualTo(1);
+        release.countDown();
+
+        assertThat(slow.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(slow.data).containsExactly(event(10, 1), Map.of("lastEventId", 10));
+        assertThat(awaitSnapshot("subscribers", 0))
+                .containsEntry("subscribers", 0)
+                .containsEntry("resyncs", 1L);
+    }
+
+    // complete() вызывается раньше, чем поток отправки снимает подписку в finally
+    private Map<String, Object> awaitSnapshot(String key, Object value) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!value.equals(hub.snapshot().get(key)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return hub.snapshot();
+    }
+
+    private static FeedEvent event(int eventId, int userId) {
+        return FeedEvent.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .entityId(eventId)
+                .eventType(FeedEvent.EventType.LIKE)
+                .operation(FeedEvent.Operation.ADD)
+                .timestamp(1L)
+                .build();
+    }
+
+    // Запоминает данные событий вместо записи в ответ; с release первая отправка ждёт, как медленный клиент
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<Object> data = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        private RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(value -> !(value instanceof String))
+                    .forEach(data::add);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        private List<Object> awaitData(int size) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (data.size() < size && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            return data;
+        }
+    }
+}
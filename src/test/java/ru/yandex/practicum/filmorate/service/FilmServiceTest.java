@@ -10,10 +10,15 @@ import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MpaRating;
-import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmFeatureIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.film.LikesMinHashIndex;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
@@ -40,6 +45,27 @@ class FilmServiceTest {
     @Mock
     private GenreStorage genreStorage;
 
+    @Mock
+    private FilmPopularityIndex popularityIndex;
+
+    @Mock
+    private FilmSearchIndex searchIndex;
+
+    @Mock
+    private FilmFeatureIndex featureIndex;
+
+    @Mock
+    private LikesMatrix likesMatrix;
+
+    @Mock
+    private LikesMinHashIndex minHashIndex;
+
+    @Mock
+    private RecommendationCache recommendationCache;
+
+    @Mock
+    private RecommendationStorage recommendationStorage;
+
     @InjectMocks
     private FilmService filmService;
 
@@ -123,27 +149,25 @@ class FilmServiceTest {
         Integer userId = 1;
         Integer friendId = 2;
 
-        User user = new User();
-        user.setId(userId);
-        User friend = new User();
-        friend.setId(friendId);
-
         Film film1 = new Film();
         film1.setId(1);
         Film film2 = new Film();
         film2.setId(2);
 
-        when(userStorage.findById(userId)).thenReturn(Optional.of(user));
-        when(userStorage.findById(friendId)).thenReturn(Optional.of(friend));
-        when(filmStorage.getCommonFilms(userId, friendId)).thenReturn(List.of(film1, film2));
+        when(userStorage.existsById(userId)).thenReturn(true);
+        when(userStorage.existsById(friendId)).thenReturn(true);
+        when(likesMatrix.commonFilms(userId, friendId)).thenReturn(new int[]{1, 2});
+        when(likesMatrix.likeCount(1)).thenReturn(3);
+        when(likesMatrix.likeCount(2)).thenReturn(5);
+        when(filmStorage.findByIds(List.of(2, 1), true)).thenReturn(List.of(film2, film1));
 
         // Act
-        List<Film> result = filmService.getCommonFilms(userId, friendId);
+        List<Film> result = filmService.getCommonFilms(userId, friendId, View.FULL);
 
         // Assert
         assertEquals(2, result.size());
-        verify(userStorage, times(2)).findById(anyInt());
-        verify(filmStorage, times(1)).getCommonFilms(userId, friendId);
+        verify(userStorage, times(2)).existsById(anyInt());
+        verify(filmStorage, times(1)).findByIds(List.of(2, 1), true);
     }
 
     @Test
@@ -152,16 +176,16 @@ class FilmServiceTest {
         Integer userId = 1;
         Integer friendId = 2;
 
-        when(userStorage.findById(userId)).thenReturn(Optional.empty());
+        when(userStorage.existsById(userId)).thenReturn(false);
 
         // Act & Assert
         assertThrows(ResponseStatusException.class, () -> {
-            filmService.getCommonFilms(userId, friendId);
+            filmService.getCommonFilms(userId, friendId, View.FULL);
         });
 
-        verify(userStorage, times(1)).findById(userId);
-        verify(userStorage, never()).findById(friendId);
-        verify(filmStorage, never()).getCommonFilms(anyInt(), anyInt());
+        verify(userStorage, times(1)).existsById(userId);
+        verify(userStorage, never()).existsById(friendId);
+        verify(likesMatrix, never()).commonFilms(anyInt(), anyInt());
     }
 
     @Test
@@ -170,19 +194,39 @@ class FilmServiceTest {
         Integer userId = 1;
         Integer friendId = 2;
 
-        User user = new User();
-        user.setId(userId);
-
-        when(userStorage.findById(userId)).thenReturn(Optional.of(user));
-        when(userStorage.findById(friendId)).thenReturn(Optional.empty());
+        when(userStorage.existsById(userId)).thenReturn(true);
+        when(userStorage.existsById(friendId)).thenReturn(false);
 
         // Act & Assert
         assertThrows(ResponseStatusException.class, () -> {
-            filmService.getCommonFilms(userId, friendId);
+            filmService.getCommonFilms(userId, friendId, View.FULL);
         });
 
-        verify(userStorage, times(1)).findById(userId);
-        verify(userStorage, times(1)).findById(friendId);
-        verify(filmStorage, never()).getCommonFilms(anyInt(), anyInt());
+        verify(userStorage, times(1)).existsById(userId);
+        verify(userStorage, times(1)).existsById(friendId);
+        verify(likesMatrix, never()).commonFilms(anyInt(), anyInt());
+    }
+
+    @Test
+    void getPopularFilms_ShouldLoadTopIdsFromPopularityIndex() {
+        Film film = new Film();
+        film.setId(7);
+
+        when(popularityIndex.getTopFilmIds(5, 1, 2000)).thenReturn(List.of(7));
+        when(filmStorage.findByIds(List.of(7), true)).thenReturn(List.of(film));
+
+        List<Film> result = filmService.getPopularFilms(5, 1, 2000, View.FULL);
+
+        assertEquals(List.of(film), result);
+        verify(filmStorage, never()).getPopularFilms(anyInt(), any(), any());
+    }
+
+    @Test
+    void getPopularFilms_InSummaryView_ShouldNotLoadLikes() {
+        when(popularityIndex.getTopFilmIds(10, null, null)).thenReturn(List.of(7, 3));
+
+        filmService.getPopularFilms(null, null, null, View.SUMMARY);
+
+        verify(filmStorage).findByIds(List.of(7, 3), false);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationCacheTest {
+
+    private final RecommendationCache cache = new RecommendationCache(2);
+
+    @Test
+    void put_OverCapacity_ShouldEvictLeastRecentlyUsed() {
+        cache.put(1, "user", 0, List.of(10), new int[0], cache.stamp());
+        cache.put(2, "user", 0, List.of(20), new int[0], cache.stamp());
+        cache.get(1, "user", 0);
+        cache.put(3, "user", 0, List.of(30), new int[0], cache.stamp());
+
+        assertThat(cache.get(1, "user", 0)).contains(List.of(10));
+        assertThat(cache.get(2, "user", 0)).isEmpty();
+        assertThat(cache.get(3, "user", 0)).contains(List.of(30));
+    }
+
+    @Test
+    void invalidateUser_ShouldEvictOnlyEntriesDependingOnUser() {
+        RecommendationCache large = new RecommendationCache(10);
+        large.put(1, "user", 0, List.of(10), new int[]{2}, large.stamp());
+        large.put(1, "item", 0, List.of(11), new int[0], large.stamp());
+        large.put(3, "user", 0, List.of(30), new int[]{4}, large.stamp());
+
+        large.invalidateUser(2);
+
+        assertThat(large.get(1, "user", 0)).isEmpty();
+        assertThat(large.get(1, "item", 0)).contains(List.of(11));
+        assertThat(large.get(3, "user", 0)).contains(List.of(30));
+
+        large.invalidateUser(1);
+
+        assertThat(large.get(1, "item", 0)).isEmpty();
+    }
+
+    @Test
+    void put_AfterInvalidationDuringCompute_ShouldBeSkipped() {
+        long stamp = cache.stamp();
+        cache.invalidateUser(5);
+        cache.put(1, "user", 0, List.of(10), new int[]{5}, stamp);
+        cache.put(5, "item", 0, List.of(50), new int[0], stamp);
+
+        assertThat(cache.get(1, "user", 0)).isEmpty();
+        assertThat(cache.get(5, "item", 0)).isEmpty();
+    }
+
+    @Test
+    void put_AfterInvalidationOfUnrelatedUser_ShouldBeKept() {
+        long stamp = cache.stamp();
+        cache.invalidateUser(5);
+        cache.put(1, "user", 0, List.of(10), new int[]{2}, stamp);
+
+        assertThat(cache.get(1, "user", 0)).contains(List.of(10));
+    }
+
+    @Test
+    void get_WithOtherModelVersion_ShouldMiss() {
+        cache.put(1, "als", 1, List.of(10), new int[0], cache.stamp());
+
+        assertThat(cache.get(1, "als", 2)).isEmpty();
+        assertThat(cache.get(1, "als", 1)).contains(List.of(10));
+        assertThat(cache.snapshot())
+                .containsEntry("hits", 1L)
+                .containsEntry("misses", 1L)
+                .containsEntry("hitRate", 0.5);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStorage;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecommendationPrecomputeJobTest {
+
+    @Mock
+    private LikesMatrix likesMatrix;
+
+    @Mock
+    private RecommendationService recommendationService;
+
+    @Mock
+    private RecommendationStorage recommendationStorage;
+
+    @InjectMocks
+    private RecommendationPrecomputeJob job;
+
+    @Test
+    void run_ShouldSaveEveryActiveUserInPartitions() {
+        int users = RecommendationPrecomputeJob.PARTITION_SIZE * 3;
+        when(likesMatrix.activeUsers()).thenReturn(IntStream.rangeClosed(1, users).toArray());
+        when(recommendationService.rankByUsers(anyInt())).thenAnswer(call -> List.of(call.<Integer>getArgument(0)));
+
+        job.run();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Integer, List<Integer>>> batches = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Instant> computedAt = ArgumentCaptor.forClass(Instant.class);
+        verify(recommendationStorage, atLeast(3)).saveAll(batches.capture(), computedAt.capture());
+
+        Map<Integer, List<Integer>> saved = new HashMap<>();
+        batches.getAllValues().forEach(batch -> {
+            assertThat(batch).hasSizeLessThanOrEqualTo(RecommendationPrecomputeJob.PARTITION_SIZE);
+            saved.putAll(batch);
+        });
+        assertThat(saved).hasSize(users).containsEntry(7, List.of(7));
+        assertThat(computedAt.getAllValues()).containsOnly(computedAt.getValue());
+    }
+
+    @Test
+    void run_WhenOneBatchFails_ShouldSaveOtherBatches() {
+        int users = RecommendationPrecomputeJob.PARTITION_SIZE * 2;
+        when(likesMatrix.activeUsers()).thenReturn(IntStream.rangeClosed(1, users).toArray());
+        when(recommendationService.rankByUsers(anyInt())).thenReturn(List.of(1));
+        doThrow(new DataIntegrityViolationException("user removed"))
+                .doNothing()
+                .when(recommendationStorage).saveAll(anyMap(), any());
+
+        job.run();
+
+        verify(recommendationStorage, times(2)).saveAll(anyMap(), any());
+    }
+}
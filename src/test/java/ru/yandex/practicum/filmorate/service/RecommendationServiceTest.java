@@ -7,13 +7,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmFeatureIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSimilarityIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikesFactorization;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.film.LikesMinHashIndex;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
@@ -27,25 +35,185 @@ class RecommendationServiceTest {
     @Mock
     private UserStorage userStorage;
 
+    @Mock
+    private LikesMatrix likesMatrix;
+
+    @Mock
+    private FilmSimilarityIndex similarityIndex;
+
+    @Mock
+    private LikesMinHashIndex minHashIndex;
+
+    @Mock
+    private LikesFactorization factorization;
+
+    @Mock
+    private FilmFeatureIndex featureIndex;
+
+    @Mock
+    private RecommendationCache cache;
+
+    @Mock
+    private RecommendationStorage recommendationStorage;
+
     @InjectMocks
     private RecommendationService recommendationService;
 
     @Test
     void getRecommendations_WhenUserNotFound_ShouldThrowException() {
-        when(userStorage.findById(1)).thenReturn(Optional.empty());
+        when(userStorage.existsById(1)).thenReturn(false);
 
         assertThrows(ResponseStatusException.class,
-                () -> recommendationService.getRecommendations(1));
+                () -> recommendationService.getRecommendations(1, "user"));
     }
 
     @Test
     void getRecommendations_WhenNoSimilarUser_ShouldReturnEmptyList() {
-        when(userStorage.findById(1)).thenReturn(Optional.of(new User()));
-        when(userStorage.findMostSimilarUser(1)).thenReturn(null);
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(likesMatrix.findNeighbours(eq(1), anyInt(), any())).thenReturn(List.of());
 
-        List<Film> result = recommendationService.getRecommendations(1);
+        List<Film> result = recommendationService.getRecommendations(1, "user");
 
         assertTrue(result.isEmpty());
-        verify(filmStorage, never()).getRecommendedFilms(anyInt(), anyInt());
+        verify(filmStorage, never()).findByIds(anyList());
+    }
+
+    @Test
+    void getRecommendations_ShouldAggregateFilmsOfAllNeighbours() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(likesMatrix.findNeighbours(eq(1), anyInt(), any())).thenReturn(List.of(
+                new LikesMatrix.Neighbour(2, 2, 2),
+                new LikesMatrix.Neighbour(3, 1, 1)));
+        when(likesMatrix.filmsNotLikedBy(2, 1)).thenReturn(new int[]{20});
+        when(likesMatrix.filmsNotLikedBy(3, 1)).thenReturn(new int[]{20, 30, 40});
+        when(likesMatrix.likeCount(anyInt())).thenReturn(0);
+        when(likesMatrix.likeCount(40)).thenReturn(5);
+
+        recommendationService.getRecommendations(1, "user");
+
+        // 20 — от обоих соседей, 40 и 30 — только от второго, порядок между ними по числу лайков
+        verify(filmStorage).findByIds(List.of(20, 40, 30));
+    }
+
+    @Test
+    void getRecommendations_WithManyUsers_ShouldScoreOnlyLshCandidates() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(likesMatrix.userCount()).thenReturn(RecommendationService.EXACT_SEARCH_LIMIT + 1);
+        when(minHashIndex.candidates(1)).thenReturn(new int[]{2, 5});
+        when(likesMatrix.scoreNeighbours(eq(1), eq(new int[]{2, 5}), anyInt(), any()))
+                .thenReturn(List.of(new LikesMatrix.Neighbour(2, 1, 1)));
+        when(likesMatrix.filmsNotLikedBy(2, 1)).thenReturn(new int[]{20});
+
+        recommendationService.getRecommendations(1, "user");
+
+        verify(filmStorage).findByIds(List.of(20));
+        verify(likesMatrix, never()).findNeighbours(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void getRecommendations_InItemMode_ShouldRankMergedSimilarFilms() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(likesMatrix.likedFilms(1)).thenReturn(new int[]{10, 11});
+        when(similarityIndex.scoreCandidates(new int[]{10, 11})).thenReturn(Map.of(20, 0.5, 30, 1.2));
+
+        recommendationService.getRecommendations(1, "item");
+
+        verify(filmStorage).findByIds(List.of(30, 20));
+        verify(likesMatrix, never()).findNeighbours(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void getRecommendations_InAlsMode_ShouldRankFactorizationScores() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(likesMatrix.likedFilms(1)).thenReturn(new int[]{10});
+        when(factorization.scoreCandidates(1, new int[]{10}, RecommendationService.FACTOR_CANDIDATES))
+                .thenReturn(Map.of(20, 0.3, 30, 0.9));
+
+        recommendationService.getRecommendations(1, "als");
+
+        verify(filmStorage).findByIds(List.of(30, 20));
+        assertThat(recommendationService.getMetrics())
+                .extractingByKey("scoring").asInstanceOf(MAP).containsOnlyKeys("als");
+    }
+
+    @Test
+    void getRecommendations_WhenCached_ShouldNotRecompute() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(similarityIndex.version()).thenReturn(3L);
+        when(cache.get(1, "item", 3L)).thenReturn(Optional.of(List.of(30, 20)));
+
+        recommendationService.getRecommendations(1, "item");
+
+        verify(filmStorage).findByIds(List.of(30, 20));
+        verify(similarityIndex, never()).scoreCandidates(any());
+        verify(cache, never()).put(anyInt(), anyString(), anyLong(), anyList(), any(), anyLong());
+    }
+
+    @Test
+    void getRecommendations_OnCacheMiss_ShouldStoreNeighboursAsDependencies() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(cache.stamp()).thenReturn(7L);
+        when(likesMatrix.findNeighbours(1, 10, LikesMatrix.Similarity.OVERLAP))
+                .thenReturn(List.of(new LikesMatrix.Neighbour(2, 1, 1.0), new LikesMatrix.Neighbour(3, 1, 0.5)));
+        when(likesMatrix.filmsNotLikedBy(2, 1)).thenReturn(new int[]{20});
+        when(likesMatrix.filmsNotLikedBy(3, 1)).thenReturn(new int[0]);
+
+        recommendationService.getRecommendations(1, null);
+
+        verify(cache).put(1, "user", 0L, List.of(20), new int[]{2, 3}, 7L);
+    }
+
+    @Test
+    void getRecommendations_WhenPrecomputedIsFresh_ShouldNotRecompute() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(recommendationStorage.findFresh(eq(1), any())).thenReturn(Optional.of(List.of(40, 20)));
+
+        recommendationService.getRecommendations(1, "user");
+
+        verify(filmStorage).findByIds(List.of(40, 20));
+        verify(likesMatrix, never()).findNeighbours(anyInt(), anyInt(), any());
+        verify(cache, never()).put(anyInt(), any(), anyLong(), any(), any(), anyLong());
+    }
+
+    @Test
+    void getRecommendations_InItemMode_ShouldIgnorePrecomputed() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(likesMatrix.likedFilms(1)).thenReturn(new int[]{10});
+        when(similarityIndex.scoreCandidates(new int[]{10})).thenReturn(Map.of(20, 0.5));
+
+        recommendationService.getRecommendations(1, "item");
+
+        verify(filmStorage).findByIds(List.of(20));
+        verify(recommendationStorage, never()).findFresh(anyInt(), any());
+    }
+
+    @Test
+    void getRecommendations_InContentMode_ShouldRankFeatureSimilarity() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        when(likesMatrix.likedFilms(1)).thenReturn(new int[]{10});
+        when(featureIndex.scoreCandidates(new int[]{10}, RecommendationService.CONTENT_CANDIDATES))
+                .thenReturn(Map.of(20, 0.4, 30, 0.8));
+
+        recommendationService.getRecommendations(1, "content");
+
+        verify(filmStorage).findByIds(List.of(30, 20));
+        verify(likesMatrix, never()).findNeighbours(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void getRecommendations_WithUnknownMode_ShouldThrowException() {
+        when(userStorage.existsById(1)).thenReturn(true);
+
+        assertThrows(ResponseStatusException.class,
+                () -> recommendationService.getRecommendations(1, "random"));
+    }
+
+    @Test
+    void getSimilarFilms_WhenFilmNotFound_ShouldThrowException() {
+        when(filmStorage.existsById(5)).thenReturn(false);
+
+        assertThrows(ResponseStatusException.class,
+                () -> recommendationService.getSimilarFilms(5, 10));
+        verify(similarityIndex, never()).similarFilms(anyInt(), anyInt());
     }
-}
\ No newline at end of file
+}
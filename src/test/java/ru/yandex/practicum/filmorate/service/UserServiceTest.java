@@ -3,14 +3,19 @@ package ru.yandex.practicum.filmorate.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UnitOfWork;
+import ru.yandex.practicum.filmorate.storage.feed.FeedTimelineCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.film.LikesMinHashIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 import java.time.LocalDate;
-import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -20,6 +25,24 @@ class UserServiceTest {
     @Mock
     private UserStorage userStorage;
 
+    @Mock
+    private FilmPopularityIndex popularityIndex;
+
+    @Mock
+    private LikesMatrix likesMatrix;
+
+    @Mock
+    private LikesMinHashIndex minHashIndex;
+
+    @Mock
+    private RecommendationCache recommendationCache;
+
+    @Mock
+    private FeedTimelineCache feedTimelineCache;
+
+    @Mock
+    private UnitOfWork unitOfWork;
+
     @InjectMocks
     private UserService userService;
 
@@ -57,8 +80,36 @@ class UserServiceTest {
 
     @Test
     void updateUser_NonExistentUser_ShouldThrowException() {
-        when(userStorage.findById(1)).thenReturn(Optional.empty());
+        when(userStorage.existsById(1)).thenReturn(false);
 
         assertThrows(ResponseStatusException.class, () -> userService.update(validUser));
     }
-}
\ No newline at end of file
+
+    @Test
+    void removeUser_ShouldDecrementFilmsDroppedFromMatrixAfterCommit() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(unitOfWork).run(any());
+        when(likesMatrix.removeUser(1)).thenReturn(new int[]{10, 20});
+
+        userService.removeUser(1);
+
+        InOrder order = inOrder(userStorage, likesMatrix, popularityIndex);
+        order.verify(userStorage).delete(1);
+        order.verify(likesMatrix).removeUser(1);
+        order.verify(popularityIndex).decrement(10);
+        order.verify(popularityIndex).decrement(20);
+    }
+
+    @Test
+    void removeUser_WhenDeleteFails_ShouldKeepRanking() {
+        when(userStorage.existsById(1)).thenReturn(true);
+        doThrow(new IllegalStateException("сбой")).when(unitOfWork).run(any());
+
+        assertThrows(IllegalStateException.class, () -> userService.removeUser(1));
+
+        verifyNoInteractions(likesMatrix, popularityIndex);
+    }
+}
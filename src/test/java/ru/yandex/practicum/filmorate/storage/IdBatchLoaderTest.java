@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({IdBatchLoader.class})
+class IdBatchLoaderTest {
+
+    private static final int USERS = 100_000;
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 7;
+    private static final String SQL = "SELECT id FROM users WHERE id " + IdBatchLoader.IDS;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdBatchLoader idBatchLoader;
+
+    @Test
+    void queryReturnsEachExistingRowOnce() {
+        insertUsers(USERS);
+        // Больше одного чанка и больше предельной длины массива в H2 (65536)
+        for (int size : List.of(10, IdBatchLoader.CHUNK_SIZE + 1, USERS)) {
+            List<Integer> ids = new ArrayList<>(idsUpTo(size));
+            ids.add(-1);
+            ids.add(1);
+
+            List<Integer> found = idBatchLoader.query(SQL, ids, (rs, rowNum) -> rs.getInt("id"));
+
+            assertThat(found).hasSize(size).doesNotHaveDuplicates().doesNotContain(-1);
+        }
+    }
+
+    @Test
+    void queryWithEmptyIdsDoesNotHitDatabase() {
+        List<Integer> found = idBatchLoader.query("SELECT id FROM missing_table WHERE id " + IdBatchLoader.IDS,
+                List.of(), (rs, rowNum) -> rs.getInt("id"));
+
+        assertThat(found).isEmpty();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void strategiesLatency() {
+        insertUsers(USERS + WARMUP_RUNS + RUNS);
+        for (int size : List.of(10, 1_000, 10_000)) {
+            long placeholders = measure(size, (ids, found) -> {
+                String sql = SQL.replace(IdBatchLoader.IDS, "IN (" + Arrays.stream(ids)
+                        .map(id -> "?")
+                        .collect(Collectors.joining(", ")) + ")");
+                jdbcTemplate.query(sql, rs -> {
+                    found.add(rs.getInt("id"));
+                }, (Object[]) ids);
+            });
+            long array = measure(size, (ids, found) ->
+                    idBatchLoader.queryInChunks(SQL, ids, ids.length, rs -> {
+                        found.add(rs.getInt("id"));
+                    }));
+            long chunks = measure(size, (ids, found) ->
+                    idBatchLoader.queryInChunks(SQL, ids, IdBatchLoader.CHUNK_SIZE, rs -> {
+                        found.add(rs.getInt("id"));
+                    }));
+
+            log.info("id: {}, IN-плейсхолдеры: {} мкс, один массив ANY(?): {} мкс, чанки по {}: {} мкс",
+                    size, placeholders, array, IdBatchLoader.CHUNK_SIZE, chunks);
+        }
+
+        // На 100 000 id одним массивом запрос не выполнить, а IN-плейсхолдеры разбираются секундами
+        long chunks = measure(USERS, (ids, found) -> idBatchLoader.query(SQL, Arrays.asList(ids), rs -> {
+            found.add(rs.getInt("id"));
+        }));
+        log.info("id: {}, чанки по {}: {} мкс", USERS, IdBatchLoader.CHUNK_SIZE, chunks);
+    }
+
+    private void insertUsers(int count) {
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, login, name, birthday)
+                SELECT X, 'user' || X || '@mail.ru', 'user' || X, 'User ' || X, DATE '1990-01-01'
+                FROM SYSTEM_RANGE(1, ?)
+                """, count);
+    }
+
+    // Медиана из нескольких прогонов после прогрева. Набор id сдвигается на каждом прогоне,
+    // иначе H2 отдаёт повторный запрос с теми же параметрами из кэша результатов
+    private static long measure(int size, BiConsumer<Integer[], Set<Integer>> query) {
+        long[] samples = new long[RUNS];
+        for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+            int offset = run + WARMUP_RUNS;
+            Integer[] ids = IntStream.rangeClosed(1, size).map(id -> id + offset).boxed().toArray(Integer[]::new);
+            Set<Integer> found = new HashSet<>();
+            long start = System.nanoTime();
+            query.accept(ids, found);
+            long elapsed = (System.nanoTime() - start) / 1_000;
+            assertThat(found).hasSize(size);
+            if (run >= 0) {
+                samples[run] = elapsed;
+            }
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private static List<Integer> idsUpTo(int size) {
+        return IntStream.rangeClosed(1, size).boxed().toList();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdPresenceCacheTest {
+
+    private final IdPresenceCache cache = new IdPresenceCache();
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void evictInsideTransaction_ShouldTakeEffectAfterCommit() {
+        assertThat(cache.exists(1, this::rowExists)).isTrue();
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evict(1);
+        // До коммита удаление не видно другим транзакциям — кэш отвечает как база
+        assertThat(cache.exists(1, this::rowExists)).isTrue();
+        assertThat(queries).hasValue(1);
+
+        commit();
+
+        assertThat(cache.exists(1, id -> false)).isFalse();
+    }
+
+    @Test
+    void answerLoadedBeforeEviction_ShouldNotBeCached() {
+        // Проверка прочитала строку до коммита удаления, а вернулась уже после вытеснения
+        assertThat(cache.exists(1, id -> {
+            cache.evict(id);
+            return true;
+        })).isTrue();
+
+        assertThat(cache.existsAll(List.of(2), unknown -> {
+            cache.evict(3);
+            return unknown;
+        })).isTrue();
+
+        // Оба id снова запрашиваются из базы, и только теперь кэшируются
+        assertThat(cache.exists(1, this::rowExists)).isTrue();
+        assertThat(cache.exists(2, this::rowExists)).isTrue();
+        assertThat(cache.existsAll(List.of(1, 2), unknown -> List.of())).isTrue();
+        assertThat(queries).hasValue(2);
+    }
+
+    private boolean rowExists(Integer id) {
+        queries.incrementAndGet();
+        return true;
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+}
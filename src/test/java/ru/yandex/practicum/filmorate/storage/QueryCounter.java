@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Подсчёт SQL-операторов, выполненных базой, по встроенной статистике H2 (INFORMATION_SCHEMA.QUERY_STATISTICS).
+ * Учитываются только операторы чтения и изменения данных, без COMMIT и служебных вызовов драйвера.
+ * Команда SET в H2 фиксирует текущую транзакцию, поэтому enable() вызывается до подготовки тестовых данных.
+ */
+public final class QueryCounter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private long mark;
+
+    public QueryCounter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public QueryCounter enable() {
+        // По умолчанию H2 хранит статистику лишь по 100 различным операторам и вытесняет остальные
+        jdbcTemplate.execute("SET QUERY_STATISTICS_MAX_ENTRIES 100000");
+        jdbcTemplate.execute("SET QUERY_STATISTICS TRUE");
+        return this;
+    }
+
+    public void reset() {
+        mark = total();
+    }
+
+    public long count() {
+        return total() - mark;
+    }
+
+    private long total() {
+        Long executed = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(SUM(EXECUTION_COUNT), 0)
+                FROM INFORMATION_SCHEMA.QUERY_STATISTICS
+                WHERE SQL_STATEMENT NOT LIKE '%QUERY_STATISTICS%'
+                  AND REGEXP_LIKE(SQL_STATEMENT, '^\\s*(SELECT|INSERT|UPDATE|DELETE|MERGE|WITH)', 'i')
+                """, Long.class);
+        return executed == null ? 0 : executed;
+    }
+}
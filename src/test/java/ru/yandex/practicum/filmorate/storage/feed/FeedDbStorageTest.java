@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Тестовая транзакция не видна фоновому потоку рассылки, поэтому outbox разбирается в тесте через relay()
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FeedDbStorage.class, FeedTimelineCache.class, IdBatchLoader.class})
+class FeedDbStorageTest {
+
+    private static final int USERS = FeedDbStorage.CELEBRITY_FOLLOWERS + 10;
+
+    private final FeedStorage feedStorage;
+    private final FeedTimelineCache timelineCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        timelineCache.clear();
+        timelineCache.setCelebrities(List.of());
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, login, name, birthday)
+                SELECT X, 'user' || X || '@mail.ru', 'user' || X, 'User ' || X, DATE '1990-01-01'
+                FROM SYSTEM_RANGE(1, ?)
+                """, USERS);
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (USERS + 1));
+        // Пользователи 2 и 3 следят за пользователем 1, пользователь 1 следит за 4
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id) VALUES (2, 1), (3, 1), (1, 4)");
+    }
+
+    @Test
+    void createEvent_ShouldDeliverToFollowersNewestFirst() {
+        feedStorage.createLikeEvent(1, 100, FeedEvent.Operation.ADD);
+        feedStorage.createReviewEvent(1, 7, FeedEvent.Operation.ADD);
+        feedStorage.createLikeEvent(4, 200, FeedEvent.Operation.ADD);
+        relay();
+
+        List<FeedEvent> timeline = feedStorage.getTimeline(2, 10);
+
+        assertThat(timeline).extracting(FeedEvent::getEntityId).containsExactly(7, 100);
+        assertThat(feedStorage.getTimeline(3, 1)).extracting(FeedEvent::getEntityId).containsExactly(7);
+        assertThat(feedStorage.getTimeline(1, 10)).extracting(FeedEvent::getEntityId).containsExactly(200);
+        assertThat(feedStorage.getTimeline(4, 10)).isEmpty();
+    }
+
+    @Test
+    void createEvent_ForCelebrity_ShouldSkipFanOutAndMergeOnRead() {
+        jdbcTemplate.update("""
+                INSERT INTO friendships (user_id, friend_id)
+                SELECT X, 5 FROM SYSTEM_RANGE(6, ?)
+                """, USERS);
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id) VALUES (2, 5)");
+
+        feedStorage.createLikeEvent(1, 100, FeedEvent.Operation.ADD);
+        feedStorage.createLikeEvent(5, 300, FeedEvent.Operation.ADD);
+        feedStorage.createLikeEvent(1, 101, FeedEvent.Operation.ADD);
+        relay();
+
+        assertThat(timelineCache.isCelebrity(5)).isTrue();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM feed_timeline t JOIN feed_events e ON e.event_id = t.event_id "
+                        + "WHERE e.user_id = 5", Integer.class)).isZero();
+        assertThat(feedStorage.getTimeline(2, 10)).extracting(FeedEvent::getEntityId)
+                .containsExactly(101, 300, 100);
+        assertThat(feedStorage.getTimeline(3, 10)).extracting(FeedEvent::getEntityId)
+                .containsExactly(101, 100);
+    }
+
+    @Test
+    void createEvent_ShouldWriteOutboxAndPublishShouldFanOutAndClearIt() {
+        feedStorage.createLikeEvent(1, 100, FeedEvent.Operation.ADD);
+        feedStorage.createLikeEvent(4, 200, FeedEvent.Operation.ADD);
+        feedStorage.createLikeEvent(1, 101, FeedEvent.Operation.ADD);
+
+        List<FeedEvent> outbox = feedStorage.findOutbox(2);
+        assertThat(outbox).extracting(FeedEvent::getEntityId).containsExactly(100, 200);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM feed_timeline", Integer.class)).isZero();
+
+        feedStorage.publishOutbox(outbox);
+
+        assertThat(feedStorage.findOutbox(10)).extracting(FeedEvent::getEntityId).containsExactly(101);
+        assertThat(feedStorage.getTimeline(2, 10)).extracting(FeedEvent::getEntityId).containsExactly(100);
+        assertThat(feedStorage.getTimeline(1, 10)).extracting(FeedEvent::getEntityId).containsExactly(200);
+    }
+
+    @Test
+    void trimTimelines_ShouldKeepLastEventsOfEachTimeline() {
+        for (int i = 1; i <= FeedTimelineCache.TIMELINE_SIZE + 20; i++) {
+            feedStorage.createLikeEvent(1, i, FeedEvent.Operation.ADD);
+        }
+        relay();
+
+        assertThat(feedStorage.trimTimelines()).isEqualTo(2 * 20);
+
+        List<Integer> kept = jdbcTemplate.queryForList(
+                "SELECT e.entity_id FROM feed_timeline t JOIN feed_events e ON e.event_id = t.event_id "
+                        + "WHERE t.user_id = 2 ORDER BY t.event_id", Integer.class);
+        assertThat(kept).hasSize(FeedTimelineCache.TIMELINE_SIZE);
+        assertThat(kept.get(0)).isEqualTo(21);
+    }
+
+    @Test
+    void getUserFeed_ShouldPageBackwardsByEventId() {
+        for (int i = 1; i <= 7; i++) {
+            feedStorage.createLikeEvent(4, i, FeedEvent.Operation.ADD);
+        }
+        feedStorage.createLikeEvent(1, 100, FeedEvent.Operation.ADD);
+
+        List<FeedEvent> latest = feedStorage.getUserFeed(4, null, 3);
+        List<FeedEvent> previous = feedStorage.getUserFeed(4, latest.get(0).getEventId(), 3);
+        List<FeedEvent> last = feedStorage.getUserFeed(4, previous.get(0).getEventId(), 3);
+
+        assertThat(latest).extracting(FeedEvent::getEntityId).containsExactly(5, 6, 7);
+        assertThat(previous).extracting(FeedEvent::getEntityId).containsExactly(2, 3, 4);
+        assertThat(last).extracting(FeedEvent::getEntityId).containsExactly(1);
+        assertThat(feedStorage.getUserFeed(4)).hasSize(7);
+    }
+
+    @Test
+    void pageShouldSeekByUserAndEventIdIndex() {
+        jdbcTemplate.update("""
+                INSERT INTO feed_events (user_id, entity_id, event_type, operation, timestamp)
+                SELECT MOD(X, 3) + 4, X, 'LIKE', 'ADD', X FROM SYSTEM_RANGE(1, 30)
+                """);
+
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT * FROM feed_events WHERE user_id = 4 AND event_id < 100 "
+                        + "ORDER BY event_id DESC LIMIT 10",
+                String.class);
+
+        // Страница ленты — поиск по диапазону в индексе (user_id, event_id), а не просмотр всей таблицы
+        assertThat(plan)
+                .containsPattern("/\\* PUBLIC\\.UQ_FEED_EVENTS_USER_EVENT\\w*: USER_ID = 4\\s+AND EVENT_ID < 100")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    void removeFromTimeline_ShouldDropAuthorEventsAndCachedTimeline() {
+        feedStorage.createLikeEvent(1, 100, FeedEvent.Operation.ADD);
+        relay();
+        assertThat(feedStorage.getTimeline(2, 10)).hasSize(1);
+
+        feedStorage.removeFromTimeline(2, 1);
+
+        // До коммита буфер не трогаем: иначе параллельное чтение успело бы снова положить в него старую ленту
+        assertThat(timelineCache.get(2)).isPresent();
+        commit();
+        assertThat(timelineCache.get(2)).isEmpty();
+        assertThat(feedStorage.getTimeline(2, 10)).isEmpty();
+        assertThat(feedStorage.getTimeline(3, 10)).hasSize(1);
+    }
+
+    @Test
+    void publishOutbox_FriendRemoval_ShouldDropEventsFannedOutWithStaleFriendship() {
+        feedStorage.createLikeEvent(1, 100, FeedEvent.Operation.ADD);
+        List<FeedEvent> pending = feedStorage.findOutbox(1_000);
+
+        // Удаление из друзей фиксируется, пока рассылка лайка, прочитавшая дружбу раньше, ещё не закончена
+        jdbcTemplate.update("DELETE FROM friendships WHERE user_id = 2 AND friend_id = 1");
+        feedStorage.removeFromTimeline(2, 1);
+        feedStorage.createFriendEvent(2, 1, FeedEvent.Operation.REMOVE);
+        jdbcTemplate.update("INSERT INTO feed_timeline (user_id, event_id) VALUES (2, ?)",
+                pending.get(0).getEventId());
+        assertThat(feedStorage.getTimeline(2, 10)).hasSize(1);
+
+        relay();
+        commit();
+
+        assertThat(feedStorage.getTimeline(2, 10)).isEmpty();
+        assertThat(feedStorage.getTimeline(3, 10)).extracting(FeedEvent::getEntityId).containsExactly(100);
+    }
+
+    @Test
+    void publishOutbox_FriendRemovalAndReAddInOneBatch_ShouldKeepLaterEvents() {
+        feedStorage.createLikeEvent(1, 99, FeedEvent.Operation.ADD);
+        jdbcTemplate.update("DELETE FROM friendships WHERE user_id = 2 AND friend_id = 1");
+        feedStorage.createFriendEvent(2, 1, FeedEvent.Operation.REMOVE);
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id) VALUES (2, 1)");
+        feedStorage.createFriendEvent(2, 1, FeedEvent.Operation.ADD);
+        feedStorage.createLikeEvent(1, 100, FeedEvent.Operation.ADD);
+
+        relay();
+        commit();
+
+        // Лайк до удаления из друзей снят, лайк после повторного добавления остался
+        assertThat(feedStorage.getTimeline(2, 10)).extracting(FeedEvent::getEntityId).containsExactly(100);
+        assertThat(feedStorage.getTimeline(3, 10)).extracting(FeedEvent::getEntityId).containsExactly(100, 99);
+    }
+
+    @Test
+    void deleteEventsByEntityId_ShouldInvalidateOnlyTimelinesHoldingThem() {
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id) VALUES (5, 4)");
+        feedStorage.createReviewEvent(1, 7, FeedEvent.Operation.ADD);
+        feedStorage.createLikeEvent(4, 200, FeedEvent.Operation.ADD);
+        relay();
+        assertThat(feedStorage.getTimeline(2, 10)).hasSize(1);
+        assertThat(feedStorage.getTimeline(5, 10)).hasSize(1);
+
+        feedStorage.deleteEventsByEntityId(7, FeedEvent.EventType.REVIEW);
+        commit();
+
+        assertThat(timelineCache.get(2)).isEmpty();
+        assertThat(timelineCache.get(5)).isPresent();
+        assertThat(feedStorage.getTimeline(2, 10)).isEmpty();
+    }
+
+    private void relay() {
+        feedStorage.publishOutbox(feedStorage.findOutbox(1_000));
+    }
+
+    // Тестовая транзакция откатывается, поэтому действия после коммита запускаем сами
+    private static void commit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+}
@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FeedOutboxRelayTest {
+
+    @Mock
+    private FeedStorage feedStorage;
+
+    @Mock
+    private FeedEventSubscriber failing;
+
+    @Mock
+    private FeedEventSubscriber subscriber;
+
+    @Test
+    void relayPending_ShouldPublishBatchesInOrderUntilOutboxIsShort() {
+        List<FeedEvent> first = List.of(event(1), event(2));
+        List<FeedEvent> second = List.of(event(3));
+        when(feedStorage.findOutbox(2)).thenReturn(first).thenReturn(second);
+        FeedOutboxRelay relay = relay(FeedOutboxRelay.Mode.ASYNC, 100, List.of(subscriber));
+
+        assertThat(relay.relayPending()).isEqualTo(3);
+
+        InOrder order = inOrder(feedStorage, subscriber);
+        order.verify(feedStorage).publishOutbox(first);
+        order.verify(subscriber).onEvents(first);
+        order.verify(feedStorage).publishOutbox(second);
+        order.verify(subscriber).onEvents(second);
+    }
+
+    @Test
+    void relayPending_ShouldNotQueryDatabaseUntilEventAppended() {
+        when(feedStorage.findOutbox(2)).thenReturn(List.of());
+        FeedOutboxRelay relay = relay(FeedOutboxRelay.Mode.ASYNC, 100, List.of(subscriber));
+        relay.relayPending();
+
+        assertThat(relay.relayPending()).isZero();
+        relay.onAppended(new FeedOutboxRelay.Appended());
+        relay.relayPending();
+
+        verify(feedStorage, times(2)).findOutbox(2);
+        verifyNoInteractions(subscriber);
+    }
+
+    @Test
+    void relayPending_ShouldIsolateFailingSubscriber() {
+        List<FeedEvent> batch = List.of(event(1));
+        when(feedStorage.findOutbox(2)).thenReturn(batch);
+        doThrow(new IllegalStateException("сбой")).when(failing).onEvents(anyList());
+        FeedOutboxRelay relay = relay(FeedOutboxRelay.Mode.ASYNC, 100, List.of(failing, subscriber));
+
+        assertThat(relay.relayPending()).isEqualTo(1);
+
+        verify(subscriber).onEvents(batch);
+    }
+
+    @Test
+    void relayPending_ShouldRetryBatchAfterStorageFailure() {
+        List<FeedEvent> batch = List.of(event(1));
+        when(feedStorage.findOutbox(2)).thenReturn(batch);
+        doThrow(new IllegalStateException("сбой")).doNothing().when(feedStorage).publishOutbox(batch);
+        FeedOutboxRelay relay = relay(FeedOutboxRelay.Mode.ASYNC, 100, List.of(subscriber));
+
+        assertThatThrownBy(relay::relayPending).isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(subscriber);
+
+        assertThat(relay.relayPending()).isEqualTo(1);
+        verify(subscriber).onEvents(batch);
+    }
+
+    @Test
+    void onAppended_ShouldRelayInCallerThreadWhenOutboxOverCapacity() {
+        List<FeedEvent> batch = List.of(event(1), event(2));
+        FeedOutboxRelay relay = relay(FeedOutboxRelay.Mode.ASYNC, 1, List.of(subscriber));
+
+        relay.onAppended(new FeedOutboxRelay.Appended());
+        verify(feedStorage, never()).findOutbox(anyInt());
+
+        when(feedStorage.findOutbox(2)).thenReturn(batch).thenReturn(List.of());
+        relay.onAppended(new FeedOutboxRelay.Appended());
+        verify(subscriber).onEvents(batch);
+    }
+
+    @Test
+    void onAppended_ShouldRelayInCallerThreadInDurableMode() {
+        List<FeedEvent> batch = List.of(event(1));
+        when(feedStorage.findOutbox(2)).thenReturn(batch);
+        FeedOutboxRelay relay = relay(FeedOutboxRelay.Mode.DURABLE, 100, List.of(subscriber));
+
+        relay.onAppended(new FeedOutboxRelay.Appended());
+
+        verify(feedStorage).publishOutbox(batch);
+        verify(subscriber).onEvents(batch);
+    }
+
+    private FeedOutboxRelay relay(FeedOutboxRelay.Mode mode, int capacity, List<FeedEventSubscriber> subscribers) {
+        return new FeedOutboxRelay(feedStorage, subscribers, mode, 2, 0, capacity, 10);
+    }
+
+    private static FeedEvent event(int eventId) {
+        return FeedEvent.builder()
+                .eventId(eventId)
+                .userId(1)
+                .entityId(eventId)
+                .eventType(FeedEvent.EventType.LIKE)
+                .operation(FeedEvent.Operation.ADD)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedTimelineCacheTest {
+
+    private final FeedTimelineCache cache = new FeedTimelineCache(2);
+
+    @Test
+    void deliver_ShouldAppendOnlyToCachedTimelinesAndKeepLastEvents() {
+        cache.put(1, List.of(event(2, 10), event(1, 10)), cache.stamp());
+
+        for (int eventId = 3; eventId <= FeedTimelineCache.TIMELINE_SIZE + 5; eventId++) {
+            cache.deliver(Set.of(1, 2), event(eventId, 10));
+        }
+        cache.deliver(Set.of(1), event(FeedTimelineCache.TIMELINE_SIZE + 5, 10));
+
+        List<FeedEvent> timeline = cache.get(1).orElseThrow();
+        assertThat(timeline).hasSize(FeedTimelineCache.TIMELINE_SIZE);
+        assertThat(timeline.get(0).getEventId()).isEqualTo(FeedTimelineCache.TIMELINE_SIZE + 5);
+        assertThat(timeline.get(timeline.size() - 1).getEventId()).isEqualTo(6);
+        assertThat(cache.get(2)).isEmpty();
+    }
+
+    @Test
+    void deliver_OutOfOrder_ShouldKeepTimelineSortedByEventId() {
+        cache.put(1, List.of(event(5, 10), event(3, 10)), cache.stamp());
+
+        cache.deliver(Set.of(1), event(8, 10));
+        cache.deliver(Set.of(1), event(4, 10));
+        cache.deliver(Set.of(1), event(1, 10));
+
+        assertThat(cache.get(1).orElseThrow()).extracting(FeedEvent::getEventId).containsExactly(8, 5, 4, 3, 1);
+    }
+
+    @Test
+    void deliver_OlderThanFullTimeline_ShouldBeDropped() {
+        // Полная лента из чётных id: 2 * TIMELINE_SIZE, ..., 4, 2
+        List<FeedEvent> events = new ArrayList<>();
+        for (int eventId = 2 * FeedTimelineCache.TIMELINE_SIZE; eventId > 0; eventId -= 2) {
+            events.add(event(eventId, 10));
+        }
+        cache.put(1, events, cache.stamp());
+
+        cache.deliver(Set.of(1), event(1, 10));
+        cache.deliver(Set.of(1), event(51, 11));
+
+        List<FeedEvent> timeline = cache.get(1).orElseThrow();
+        assertThat(timeline).hasSize(FeedTimelineCache.TIMELINE_SIZE)
+                .extracting(FeedEvent::getEventId)
+                .isSortedAccordingTo(Comparator.reverseOrder())
+                .contains(51)
+                .doesNotContain(1, 2);
+    }
+
+    @Test
+    void invalidate_ShouldDropOnlyListedTimelines() {
+        cache.put(1, List.of(event(1, 10)), cache.stamp());
+        cache.put(2, List.of(event(1, 10)), cache.stamp());
+
+        cache.invalidate(List.of(1));
+
+        assertThat(cache.get(1)).isEmpty();
+        assertThat(cache.get(2)).isPresent();
+    }
+
+    @Test
+    void put_AfterDeliveryDuringLoad_ShouldBeSkipped() {
+        long stamp = cache.stamp();
+        cache.deliver(Set.of(3), event(1, 10));
+        cache.put(1, List.of(), stamp);
+
+        assertThat(cache.get(1)).isEmpty();
+    }
+
+    @Test
+    void put_OverCapacity_ShouldEvictLeastRecentlyRead() {
+        cache.put(1, List.of(event(1, 10)), cache.stamp());
+        cache.put(2, List.of(event(2, 10)), cache.stamp());
+        cache.get(1);
+        cache.put(3, List.of(event(3, 10)), cache.stamp());
+
+        assertThat(cache.get(1)).isPresent();
+        assertThat(cache.get(2)).isEmpty();
+        assertThat(cache.get(3)).isPresent();
+    }
+
+    @Test
+    void removeUser_ShouldDropTheirEventsFromOtherTimelines() {
+        List<FeedEvent> events = new ArrayList<>(List.of(event(4, 10), event(3, 11), event(2, 10), event(1, 11)));
+        cache.put(1, events, cache.stamp());
+        cache.markCelebrity(10, true);
+
+        cache.removeUser(10);
+
+        assertThat(cache.get(1).orElseThrow()).extracting(FeedEvent::getEventId).containsExactly(3, 1);
+        assertThat(cache.isCelebrity(10)).isFalse();
+    }
+
+    private static FeedEvent event(int eventId, int userId) {
+        return FeedEvent.builder()
+                .eventId(eventId)
+                .userId(userId)
+                .entityId(1)
+                .eventType(FeedEvent.EventType.LIKE)
+                .operation(FeedEvent.Operation.ADD)
+                .timestamp((long) eventId)
+                .build();
+    }
+}
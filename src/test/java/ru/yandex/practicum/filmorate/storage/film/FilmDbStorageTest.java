@@ -7,20 +7,35 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
 import java.time.LocalDate;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({FilmDbStorage.class})
+@Import({FilmDbStorage.class, IdBatchLoader.class})
 class FilmDbStorageTest {
 
     private final FilmStorage filmStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
 
     private Film testFilm;
 
@@ -71,4 +86,140 @@ class FilmDbStorageTest {
         List<Film> films = filmStorage.findAll();
         assertThat(films).hasSize(2);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLikeCountFollowsLikes() {
+        Film film = filmStorage.create(testFilm);
+        Integer userId = createUser("liker");
+
+        filmStorage.addLike(film.getId(), userId);
+        filmStorage.addLike(film.getId(), userId);
+        assertThat(likeCount(film.getId())).isEqualTo(1);
+
+        filmStorage.removeLike(film.getId(), userId);
+        assertThat(likeCount(film.getId())).isZero();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testConcurrentDuplicateLikeIsNoOp() throws Exception {
+        Film film = filmStorage.create(testFilm);
+        Integer userId = createUser("racer");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CountDownLatch liked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Первый лайк не зафиксирован: второй не видит его в NOT EXISTS и упирается в первичный ключ
+            Future<?> first = executor.submit(() -> transaction.executeWithoutResult(status -> {
+                filmStorage.addLike(film.getId(), userId);
+                liked.countDown();
+                awaitQuietly(release);
+            }));
+            assertThat(liked.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<Film> second = executor.submit(() -> filmStorage.addLike(film.getId(), userId));
+            Thread.sleep(200);
+            release.countDown();
+
+            first.get(10, TimeUnit.SECONDS);
+            assertThat(second.get(10, TimeUnit.SECONDS).getId()).isEqualTo(film.getId());
+            assertThat(likeCount(film.getId())).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+            jdbcTemplate.update("DELETE FROM likes WHERE film_id = ?", film.getId());
+            jdbcTemplate.update("DELETE FROM films WHERE id = ?", film.getId());
+            jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+        }
+    }
+
+    @Test
+    void testPopularFilmsOrderedByLikeCount() {
+        Film first = filmStorage.create(testFilm);
+        Film second = filmStorage.create(copyOf(testFilm, "Second"));
+        Integer userId = createUser("fan");
+
+        filmStorage.addLike(second.getId(), userId);
+
+        List<Film> popular = filmStorage.getPopularFilms(10, null, null);
+        assertThat(popular).extracting(Film::getId).containsExactly(second.getId(), first.getId());
+    }
+
+    @Test
+    void testReconcileLikeCountsRepairsDrift() {
+        Film film = filmStorage.create(testFilm);
+        Integer userId = createUser("drifter");
+        filmStorage.addLike(film.getId(), userId);
+
+        jdbcTemplate.update("UPDATE films SET like_count = 42 WHERE id = ?", film.getId());
+
+        assertThat(filmStorage.reconcileLikeCounts()).isEqualTo(1);
+        assertThat(likeCount(film.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void testPopularByYearUsesYearIndex() {
+        String plan = explain(FilmDbStorage.popularFilmsSql(null, 2000), 2000, 10);
+
+        assertThat(plan).contains("IDX_FILMS_YEAR_POPULARITY");
+        assertThat(plan).doesNotContain("EXTRACT");
+    }
+
+    @Test
+    void testPopularByGenreAndYearUsesIndexes() {
+        String plan = explain(FilmDbStorage.popularFilmsSql(1, 2000), 1, 2000, 10);
+
+        // Фильмы года читаются из idx_films_year_popularity уже в порядке рейтинга, а жанр каждого проверяется
+        // точечным поиском по обеим колонкам film_genres — не просмотром ключа целиком
+        assertThat(plan).contains("IDX_FILMS_YEAR_POPULARITY: RELEASE_YEAR = ?2").doesNotContain("tableScan");
+        assertThat(plan).containsPattern(
+                "\"FILM_GENRES\" \"FG\"\\s+/\\* PUBLIC\\.\\w+: GENRE_ID = \\?1\\s+AND FILM_ID = F\\.ID");
+    }
+
+    @Test
+    void testPopularFilmsFilteredByGenreAndYear() {
+        testFilm.setGenres(new LinkedHashSet<>(List.of(new Genre(1, null))));
+        Film comedy2000 = filmStorage.create(testFilm);
+        filmStorage.create(copyOf(testFilm, "No genre"));
+
+        Film comedy2001 = copyOf(testFilm, "Comedy 2001");
+        comedy2001.setReleaseDate(LocalDate.of(2001, 5, 5));
+        comedy2001.setGenres(new LinkedHashSet<>(List.of(new Genre(1, null))));
+        filmStorage.create(comedy2001);
+
+        assertThat(filmStorage.getPopularFilms(10, 1, 2000))
+                .extracting(Film::getId)
+                .containsExactly(comedy2000.getId());
+    }
+
+    private String explain(String sql, Object... params) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, params));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Integer createUser(String login) {
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                login + "@mail.ru", login, login, LocalDate.of(1990, 1, 1));
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = ?", Integer.class, login);
+    }
+
+    private Integer likeCount(Integer filmId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class, filmId);
+    }
+
+    private Film copyOf(Film source, String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription(source.getDescription());
+        film.setReleaseDate(source.getReleaseDate());
+        film.setDuration(source.getDuration());
+        film.setMpa(source.getMpa());
+        return film;
+    }
+}
@@ -0,0 +1,288 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
+import ru.yandex.practicum.filmorate.storage.director.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, DirectorDbStorage.class, FilmFeatureIndex.class, IdBatchLoader.class})
+class FilmFeatureIndexTest {
+
+    private static final int TOP = 20;
+
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final FilmFeatureIndex featureIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldRankFilmsSharingRareFeaturesFirst() {
+        Director nolan = directorStorage.create(Director.builder().name("Кристофер Нолан").build());
+        Director other = directorStorage.create(Director.builder().name("Другой режиссёр").build());
+        int liked = filmStorage.create(film("Начало", 1, nolan, 2)).getId();
+        int sameDirector = filmStorage.create(film("Интерстеллар", 1, nolan, 2)).getId();
+        int sameGenre = filmStorage.create(film("Драма", 1, other, 2)).getId();
+        int unrelated = filmStorage.create(film("Мультфильм", 2, other, 3)).getId();
+        featureIndex.rebuild();
+
+        Map<Integer, Double> scores = featureIndex.scoreCandidates(new int[]{liked}, TOP);
+
+        assertThat(scores.keySet()).containsExactly(sameDirector, sameGenre);
+        assertThat(scores.get(sameDirector)).isCloseTo(1.0, within(1e-9));
+        assertThat(scores).doesNotContainKey(unrelated);
+    }
+
+    @Test
+    void candidatesShouldMatchFullScan() {
+        int films = 5_000;
+        generateCatalogue(films);
+        featureIndex.rebuild();
+
+        Map<Integer, Set<Integer>> features = loadFeatures();
+        Map<Integer, Double> idf = idf(features);
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            // Холодный старт: от одного до пяти лайков
+            int[] liked = random.ints(1 + random.nextInt(5), 1, films + 1).distinct().sorted().toArray();
+
+            Map<Integer, Double> expected = fullScan(features, idf, liked);
+            Map<Integer, Double> actual = featureIndex.scoreCandidates(liked, TOP);
+            // Равные по косинусу фильмы взаимозаменяемы, поэтому сверяем оценки, а не id
+            List<Double> topScores = expected.values().stream()
+                    .sorted(Comparator.reverseOrder())
+                    .limit(TOP)
+                    .toList();
+            assertThat(List.copyOf(actual.values()))
+                    .as("лайки %s", Arrays.toString(liked))
+                    .usingElementComparator(FilmFeatureIndexTest::compareScores)
+                    .isEqualTo(topScores);
+            actual.forEach((filmId, score) -> assertThat(score).isCloseTo(expected.get(filmId), within(1e-9)));
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void indexLatencyAgainstFullScan() {
+        int films = 5_000;
+        generateCatalogue(films);
+        featureIndex.rebuild();
+
+        Map<Integer, Set<Integer>> features = loadFeatures();
+        Map<Integer, Double> idf = idf(features);
+        Random random = new Random(7);
+        List<int[]> profiles = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            profiles.add(random.ints(1 + random.nextInt(5), 1, films + 1).distinct().sorted().toArray());
+        }
+
+        long indexMicros = median(profiles, liked -> featureIndex.scoreCandidates(liked, TOP));
+        long scanMicros = median(profiles, liked -> fullScan(features, idf, liked));
+        log.info("Контентные рекомендации по {} фильмам: обратный индекс {} мкс, полный перебор {} мкс",
+                films, indexMicros, scanMicros);
+    }
+
+    @Test
+    void equalScoresShouldPreferSmallerIdWhateverTheVisitOrder() {
+        // У лайкнутого фильма два жанра; два других фильма делят с ним по одному жанру с одинаковой частотой,
+        // поэтому их оценки равны, а обходятся они в порядке номеров жанров, а не id
+        int liked = filmStorage.create(film("Лайкнутый", 1, List.of(1, 2))).getId();
+        int secondGenre = filmStorage.create(film("Второй жанр", 1, List.of(2))).getId();
+        int firstGenre = filmStorage.create(film("Первый жанр", 1, List.of(1))).getId();
+        featureIndex.rebuild();
+
+        Map<Integer, Double> all = featureIndex.scoreCandidates(new int[]{liked}, TOP);
+        assertThat(all.get(firstGenre)).isCloseTo(all.get(secondGenre), within(1e-9));
+        assertThat(featureIndex.scoreCandidates(new int[]{liked}, 1)).containsOnlyKeys(secondGenre);
+    }
+
+    @Test
+    void updateWithSameFeaturesShouldKeepVersion() {
+        Director director = directorStorage.create(Director.builder().name("Режиссёр").build());
+        Film created = filmStorage.create(film("Фильм", 1, director, 2));
+        featureIndex.rebuild();
+        long version = featureIndex.version();
+
+        created.setName("Новое название");
+        featureIndex.indexFilm(filmStorage.update(created));
+
+        assertThat(featureIndex.version()).isEqualTo(version);
+    }
+
+    @Test
+    void incrementalUpdatesShouldMatchRebuild() {
+        generateCatalogue(300);
+        featureIndex.rebuild();
+
+        Director director = directorStorage.create(Director.builder().name("Новый режиссёр").build());
+        Film created = filmStorage.create(film("Новый фильм", 4, director, 1));
+        featureIndex.indexFilm(created);
+        Film updated = filmStorage.findById(5).orElseThrow();
+        updated.setGenres(new LinkedHashSet<>(List.of(new Genre(6, null))));
+        updated.setDirectors(new LinkedHashSet<>(List.of(director)));
+        featureIndex.indexFilm(filmStorage.update(updated));
+        filmStorage.delete(7);
+        featureIndex.removeFilm(7);
+        directorStorage.delete(3);
+        featureIndex.removeDirector(3);
+
+        FilmFeatureIndex rebuilt = new FilmFeatureIndex(jdbcTemplate);
+        rebuilt.rebuild();
+        for (int filmId = 1; filmId <= 300; filmId++) {
+            int[] liked = {filmId, created.getId()};
+            Map<Integer, Double> actual = featureIndex.scoreCandidates(liked, TOP);
+            Map<Integer, Double> expected = rebuilt.scoreCandidates(liked, TOP);
+            assertThat(List.copyOf(actual.values()))
+                    .as("лайк фильма %d", filmId)
+                    .usingElementComparator(FilmFeatureIndexTest::compareScores)
+                    .isEqualTo(List.copyOf(expected.values()));
+        }
+    }
+
+    // Каталог с перекошенными частотами: жанры и рейтинги встречаются часто, режиссёры — редко
+    private void generateCatalogue(int films) {
+        jdbcTemplate.update("INSERT INTO director (id, name) SELECT X, 'Director ' || X FROM SYSTEM_RANGE(1, ?)",
+                films / 20);
+        jdbcTemplate.update("""
+                INSERT INTO films (id, name, description, release_date, duration, mpa_id)
+                SELECT X, 'Film ' || X, 'Description', DATE '2000-01-01', 100, 1 + MOD(X * 7, 5)
+                FROM SYSTEM_RANGE(1, ?)
+                """, films);
+        jdbcTemplate.update("""
+                INSERT INTO film_genres (film_id, genre_id)
+                SELECT DISTINCT f.X, 1 + MOD(f.X * 31 + g.X * g.X * 17, 6)
+                FROM SYSTEM_RANGE(1, ?) f, SYSTEM_RANGE(1, 2) g
+                """, films);
+        jdbcTemplate.update("""
+                INSERT INTO film_director (film_id, director_id)
+                SELECT X, 1 + MOD(X * 104729, ?)
+                FROM SYSTEM_RANGE(1, ?)
+                """, films / 20, films);
+        // Строки вставлены с явными id — сдвигаем последовательности, чтобы create не выдал занятый id
+        jdbcTemplate.execute("ALTER TABLE director ALTER COLUMN id RESTART WITH " + (films / 20 + 1));
+        jdbcTemplate.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (films + 1));
+    }
+
+    private Map<Integer, Set<Integer>> loadFeatures() {
+        Map<Integer, Set<Integer>> features = new HashMap<>();
+        jdbcTemplate.query("SELECT id, mpa_id FROM films", rs -> {
+            features.computeIfAbsent(rs.getInt("id"), id -> new HashSet<>()).add(rs.getInt("mpa_id") * 3 + 2);
+        });
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            features.get(rs.getInt("film_id")).add(rs.getInt("genre_id") * 3);
+        });
+        jdbcTemplate.query("SELECT film_id, director_id FROM film_director", rs -> {
+            features.get(rs.getInt("film_id")).add(rs.getInt("director_id") * 3 + 1);
+        });
+        return features;
+    }
+
+    private static Map<Integer, Double> idf(Map<Integer, Set<Integer>> features) {
+        Map<Integer, Integer> frequency = new HashMap<>();
+        features.values().forEach(set -> set.forEach(feature -> frequency.merge(feature, 1, Integer::sum)));
+        Map<Integer, Double> idf = new HashMap<>();
+        frequency.forEach((feature, count) -> idf.put(feature, Math.log1p((double) features.size() / count)));
+        return idf;
+    }
+
+    // Косинус профиля к каждому фильму каталога — эталон для индекса
+    private static Map<Integer, Double> fullScan(Map<Integer, Set<Integer>> features, Map<Integer, Double> idf,
+                                                 int[] liked) {
+        Map<Integer, Double> profile = new HashMap<>();
+        for (int filmId : liked) {
+            double norm = norm(features.get(filmId), idf);
+            features.get(filmId).forEach(feature -> profile.merge(feature, idf.get(feature) / norm, Double::sum));
+        }
+        double profileNorm = Math.sqrt(profile.values().stream().mapToDouble(weight -> weight * weight).sum());
+
+        Map<Integer, Double> scores = new HashMap<>();
+        features.forEach((filmId, filmFeatures) -> {
+            double dot = 0;
+            for (int feature : filmFeatures) {
+                dot += profile.getOrDefault(feature, 0.0) * idf.get(feature);
+            }
+            if (dot > 0 && Arrays.binarySearch(liked, filmId) < 0) {
+                scores.put(filmId, dot / (profileNorm * norm(filmFeatures, idf)));
+            }
+        });
+        return scores;
+    }
+
+    private static int compareScores(Double a, Double b) {
+        return Math.abs(a - b) < 1e-9 ? 0 : Double.compare(a, b);
+    }
+
+    private static double norm(Set<Integer> features, Map<Integer, Double> idf) {
+        return Math.sqrt(features.stream().mapToDouble(feature -> idf.get(feature) * idf.get(feature)).sum());
+    }
+
+    private long median(List<int[]> profiles, Consumer<int[]> call) {
+        profiles.forEach(call);
+        long[] samples = new long[profiles.size()];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            call.accept(profiles.get(i));
+            samples[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private Film film(String name, int mpaId, List<Integer> genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2010, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new MpaRating(mpaId, null, null));
+        film.setGenres(genreIds.stream()
+                .map(genreId -> new Genre(genreId, null))
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        film.setDirectors(new LinkedHashSet<>());
+        return film;
+    }
+
+    private Film film(String name, int genreId, Director director, int mpaId) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2010, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new MpaRating(mpaId, null, null));
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(genreId, null))));
+        film.setDirectors(new LinkedHashSet<>(List.of(director)));
+        return film;
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.sun.management.ThreadMXBean;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
+import ru.yandex.practicum.filmorate.storage.QueryCounter;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, IdBatchLoader.class})
+class FilmHydrationTest {
+
+    private static final int FILMS = 100;
+    private static final int USERS = 200;
+
+    private final FilmStorage filmStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    private QueryCounter queryCounter;
+    private final List<Integer> filmIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        queryCounter = new QueryCounter(jdbcTemplate).enable();
+
+        jdbcTemplate.update("INSERT INTO director (name) VALUES ('Режиссёр 1'), ('Режиссёр 2')");
+        List<Integer> directorIds = jdbcTemplate.queryForList("SELECT id FROM director ORDER BY id", Integer.class);
+        for (int i = 0; i < USERS; i++) {
+            jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                    "hydration" + i + "@mail.ru", "hydration" + i, "Пользователь " + i, LocalDate.of(1990, 1, 1));
+        }
+        List<Integer> userIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Integer.class);
+
+        for (int i = 0; i < FILMS; i++) {
+            Film film = new Film();
+            film.setName("Фильм " + i);
+            film.setDescription("Описание");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            film.setMpa(new MpaRating(1, null, null));
+            film.setGenres(new LinkedHashSet<>(List.of(new Genre(1, null), new Genre(2, null), new Genre(6, null))));
+            film.setDirectors(new LinkedHashSet<>(directorIds.stream()
+                    .map(id -> Director.builder().id(id).build())
+                    .toList()));
+            int filmId = filmStorage.create(film).getId();
+            filmIds.add(filmId);
+            for (int u = 0; u < userIds.size(); u += 1 + i % 4) {
+                filmStorage.addLike(filmId, userIds.get(u));
+            }
+        }
+    }
+
+    @Test
+    void findByIdShouldHydrateFilmInSingleStatement() {
+        Integer filmId = filmIds.getFirst();
+
+        queryCounter.reset();
+        Film film = filmStorage.findById(filmId).orElseThrow();
+
+        assertThat(queryCounter.count()).isEqualTo(1);
+        assertThat(film.getMpa().getName()).isEqualTo("G");
+        assertThat(film.getGenres()).extracting(Genre::getId).containsExactly(1, 2, 6);
+        assertThat(film.getGenres()).extracting(Genre::getName).containsExactly("Комедия", "Драма", "Боевик");
+        assertThat(film.getDirectors()).extracting(Director::getName).containsExactly("Режиссёр 1", "Режиссёр 2");
+        assertThat(film.getLikes()).hasSize(USERS);
+    }
+
+    @Test
+    void listLoadsShouldHydrateFilmsInSingleStatement() {
+        queryCounter.reset();
+        List<Film> films = filmStorage.findByIds(filmIds);
+
+        assertThat(queryCounter.count()).isEqualTo(1);
+        assertThat(films).extracting(Film::getId).containsExactlyElementsOf(filmIds);
+        assertThat(films).allSatisfy(film -> {
+            assertThat(film.getGenres()).hasSize(3);
+            assertThat(film.getDirectors()).hasSize(2);
+            assertThat(film.getLikes()).isNotEmpty();
+        });
+
+        queryCounter.reset();
+        assertThat(filmStorage.findAll()).hasSize(FILMS);
+        assertThat(filmStorage.getPopularFilms(10, 1, 2000)).hasSize(10);
+        assertThat(queryCounter.count()).isEqualTo(2);
+    }
+
+    @Test
+    void summaryLoadsShouldCountLikesWithoutLoadingThem() {
+        List<Film> full = filmStorage.findByIds(filmIds);
+
+        queryCounter.reset();
+        List<Film> summary = filmStorage.findByIds(filmIds, false);
+
+        assertThat(queryCounter.count()).isEqualTo(1);
+        assertThat(summary).extracting(Film::getLikes).containsOnlyNulls();
+        assertThat(summary).extracting(Film::getLikeCount)
+                .containsExactlyElementsOf(full.stream().map(film -> film.getLikes().size()).toList());
+        assertThat(summary.getFirst().getGenres()).hasSize(3);
+    }
+
+    @Test
+    void filmWithoutRelationsShouldHaveEmptyCollections() {
+        Film film = new Film();
+        film.setName("Пустой");
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2001, 1, 1));
+        film.setDuration(90);
+        film.setMpa(new MpaRating(2, null, null));
+        Integer filmId = filmStorage.create(film).getId();
+
+        Film found = filmStorage.findById(filmId).orElseThrow();
+
+        assertThat(found.getGenres()).isEmpty();
+        assertThat(found.getDirectors()).isEmpty();
+        assertThat(found.getLikes()).isEmpty();
+    }
+
+    // Замер задержки загрузки; на выходе среднее время на вызов, для сравнения реализаций
+    @Test
+    @Tag("benchmark")
+    void measureHydrationLatency() {
+        int rounds = 2000;
+        for (int i = 0; i < rounds; i++) {
+            filmStorage.findById(filmIds.get(i % FILMS));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            filmStorage.findById(filmIds.get(i % FILMS));
+        }
+        double singleMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+
+        int listRounds = 200;
+        for (int i = 0; i < listRounds; i++) {
+            filmStorage.findByIds(filmIds);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < listRounds; i++) {
+            filmStorage.findByIds(filmIds);
+        }
+        double listMicros = (System.nanoTime() - start) / 1000.0 / listRounds;
+
+        log.info("findById: {} мкс, findByIds({} фильмов): {} мкс",
+                String.format("%.1f", singleMicros), FILMS, String.format("%.1f", listMicros));
+        assertThat(singleMicros).isPositive();
+    }
+
+    // Замер выделенной памяти на вызов: лайки популярных фильмов не должны раздувать кучу
+    @Test
+    @Tag("benchmark")
+    void measureHydrationAllocation() {
+        long findAllBytes = allocatedPerCall(() -> filmStorage.findAll());
+        long popularBytes = allocatedPerCall(() -> filmStorage.getPopularFilms(10, null, null));
+        long fullBytes = allocatedPerCall(() -> filmStorage.findByIds(filmIds, true));
+        long summaryBytes = allocatedPerCall(() -> filmStorage.findByIds(filmIds, false));
+
+        log.info("Выделено на вызов: findAll({} фильмов) {} байт, getPopularFilms(10) {} байт",
+                FILMS, findAllBytes, popularBytes);
+        log.info("findByIds({} фильмов): полное представление {} байт, краткое {} байт",
+                FILMS, fullBytes, summaryBytes);
+        assertThat(findAllBytes).isPositive();
+    }
+
+    private static long allocatedPerCall(Runnable call) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int rounds = 200;
+        for (int i = 0; i < rounds; i++) {
+            call.run();
+        }
+        long start = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < rounds; i++) {
+            call.run();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - start) / rounds;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, FilmPopularityIndex.class, IdBatchLoader.class})
+class FilmPopularityIndexTest {
+
+    private final FilmStorage filmStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldStayConsistentWithStorageAfterLikes() {
+        Film comedy = filmStorage.create(film("Comedy", 2000, 1));
+        Film drama = filmStorage.create(film("Drama", 2000, 2));
+        Film oldComedy = filmStorage.create(film("Old comedy", 1990, 1));
+        popularityIndex.rebuild();
+
+        Integer first = createUser("first");
+        Integer second = createUser("second");
+        filmStorage.addLike(drama.getId(), first);
+        popularityIndex.increment(drama.getId());
+        filmStorage.addLike(oldComedy.getId(), first);
+        popularityIndex.increment(oldComedy.getId());
+        filmStorage.addLike(oldComedy.getId(), second);
+        popularityIndex.increment(oldComedy.getId());
+
+        assertThat(popularityIndex.getTopFilmIds(10, null, null))
+                .containsExactly(oldComedy.getId(), drama.getId(), comedy.getId());
+        assertThat(popularityIndex.isConsistentWith(filmStorage, 10, null, null)).isTrue();
+        assertThat(popularityIndex.isConsistentWith(filmStorage, 10, 1, null)).isTrue();
+        assertThat(popularityIndex.isConsistentWith(filmStorage, 10, null, 2000)).isTrue();
+        assertThat(popularityIndex.isConsistentWith(filmStorage, 10, 1, 1990)).isTrue();
+    }
+
+    @Test
+    void shouldDetectDriftAndRecoverOnRebuild() {
+        Film film = filmStorage.create(film("Drifting", 2005, 3));
+        Film other = filmStorage.create(film("Other", 2005, 3));
+        popularityIndex.rebuild();
+
+        // Лайк мимо индекса — имитация потерянного обновления
+        filmStorage.addLike(other.getId(), createUser("ghost"));
+
+        assertThat(popularityIndex.isConsistentWith(filmStorage, 10, null, null)).isFalse();
+
+        popularityIndex.rebuild();
+
+        assertThat(popularityIndex.getTopFilmIds(10, 3, 2005)).containsExactly(other.getId(), film.getId());
+        assertThat(popularityIndex.isConsistentWith(filmStorage, 10, null, null)).isTrue();
+    }
+
+    @Test
+    void concurrentLikesShouldNotOverwriteEachOther() throws Exception {
+        Film film = filmStorage.create(film("Contended", 2010, 2));
+        popularityIndex.rebuild();
+        int threads = 4;
+        int likesPerThread = 1_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int like = 0; like < likesPerThread; like++) {
+                        popularityIndex.increment(film.getId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // Снимок фильма без лайков (например, после обновления описания) не сбрасывает счётчик
+        popularityIndex.update(filmStorage.findById(film.getId()).orElseThrow());
+        popularityIndex.decrement(film.getId());
+
+        assertThat(popularityIndex.getLikeCount(film.getId())).isEqualTo(threads * likesPerThread - 1);
+    }
+
+    private Film film(String name, int year, int genreId) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new MpaRating(1, "G", null));
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(genreId, null))));
+        return film;
+    }
+
+    private Integer createUser(String login) {
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                login + "@mail.ru", login, login, LocalDate.of(1990, 1, 1));
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = ?", Integer.class, login);
+    }
+}
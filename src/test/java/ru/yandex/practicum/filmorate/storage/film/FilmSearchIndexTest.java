@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.IdBatchLoader;
+import ru.yandex.practicum.filmorate.storage.director.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, DirectorDbStorage.class, FilmPopularityIndex.class, FilmSearchIndex.class,
+        IdBatchLoader.class})
+class FilmSearchIndexTest {
+
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final FilmSearchIndex searchIndex;
+
+    private Director tarantino;
+
+    @BeforeEach
+    void setUp() {
+        Director nolan = directorStorage.create(Director.builder().name("Кристофер Нолан").build());
+        tarantino = directorStorage.create(Director.builder().name("Quentin Tarantino").build());
+
+        filmStorage.create(film("Начало", nolan));
+        filmStorage.create(film("Интерстеллар", nolan));
+        filmStorage.create(film("Pulp Fiction", tarantino));
+        filmStorage.create(film("Криминальное чтиво", tarantino));
+        filmStorage.create(film("Начало конца", null));
+        filmStorage.create(film("The Beginning: Начало?", null));
+        searchIndex.rebuild();
+    }
+
+    @Test
+    void shouldReturnSameResultSetAsLikeSearch() {
+        for (String query : List.of("нач", "НАЧАЛО", "стел", "ulp fic", "o", "ино", "нолан", "tarant",
+                "ло к", ": н", "?", "отсутствует")) {
+            assertSameResultSet(query, false, true);
+            assertSameResultSet(query, true, false);
+            assertSameResultSet(query, true, true);
+        }
+    }
+
+    @Test
+    void shouldRankExactMatchesFirst() {
+        List<Integer> ids = searchIndex.search("начало", false, true);
+        List<Film> films = filmStorage.findByIds(ids);
+
+        assertThat(films).extracting(Film::getName)
+                .containsExactly("Начало", "Начало конца", "The Beginning: Начало?");
+    }
+
+    @Test
+    void shouldFollowIncrementalUpdates() {
+        Film film = filmStorage.findByIds(searchIndex.search("pulp", false, true)).getFirst();
+        film.setName("Бешеные псы");
+        searchIndex.indexFilm(filmStorage.update(film));
+
+        assertThat(searchIndex.search("pulp", false, true)).isEmpty();
+        assertThat(searchIndex.search("псы", false, true)).containsExactly(film.getId());
+
+        Director renamed = Director.builder().id(tarantino.getId()).name("Тарантино").build();
+        searchIndex.indexDirector(directorStorage.update(renamed));
+
+        assertThat(searchIndex.search("тарант", true, false)).hasSize(2);
+        assertThat(searchIndex.search("quentin", true, false)).isEmpty();
+    }
+
+    private void assertSameResultSet(String query, boolean byDirector, boolean byTitle) {
+        List<Integer> expected = filmStorage.searchFilms(query, byDirector, byTitle).stream()
+                .map(Film::getId)
+                .toList();
+
+        assertThat(searchIndex.search(query, byDirector, byTitle))
+                .as("query '%s', director=%s, title=%s", query, byDirector, byTitle)
+                .containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    private Film film(String name, Director director) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2010, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new MpaRating(1, "G", null));
+        if (director != null) {
+            film.setDirectors(new LinkedHashSet<>(List.of(director)));
+        }
+        return film;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({LikesMatrix.class, FilmSimilarityIndex.class})
+class FilmSimilarityIndexTest {
+
+    private final LikesMatrix likesMatrix;
+    private final FilmSimilarityIndex similarityIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void similarFilmsShouldMatchBruteForceCosine() {
+        SyntheticLikes.generate(jdbcTemplate, 400, 150, 6);
+        likesMatrix.rebuild();
+        similarityIndex.recompute();
+
+        Map<Integer, Set<Integer>> usersByFilm = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, user_id FROM likes", rs -> {
+            usersByFilm.computeIfAbsent(rs.getInt("film_id"), k -> new HashSet<>()).add(rs.getInt("user_id"));
+        });
+
+        for (int filmId = 1; filmId <= 150; filmId++) {
+            Map<Integer, Double> expected = cosine(usersByFilm, filmId);
+            List<Integer> actual = similarityIndex.similarFilms(filmId, FilmSimilarityIndex.TOP_K);
+
+            assertThat(actual).hasSize(Math.min(FilmSimilarityIndex.TOP_K, expected.size()));
+            double previous = Double.MAX_VALUE;
+            for (Integer other : actual) {
+                assertThat(expected).containsKey(other);
+                assertThat(expected.get(other)).isLessThanOrEqualTo(previous + 1e-6);
+                previous = expected.get(other);
+            }
+            // Ни один фильм вне топа не похож сильнее последнего в топе
+            if (!actual.isEmpty()) {
+                double threshold = expected.get(actual.getLast());
+                expected.forEach((other, score) -> {
+                    if (!actual.contains(other)) {
+                        assertThat(score).isLessThanOrEqualTo(threshold + 1e-6);
+                    }
+                });
+            }
+        }
+    }
+
+    @Test
+    void scoreCandidatesShouldSumSimilarityAndSkipLikedFilms() {
+        SyntheticLikes.generate(jdbcTemplate, 0, 4, 0);
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, login, name, birthday)
+                SELECT X, 'u' || X || '@mail.ru', 'u' || X, 'U', DATE '1990-01-01' FROM SYSTEM_RANGE(1, 3)
+                """);
+        // Фильм 3 лайкают вместе и с 1, и с 2; фильм 4 — только вместе с 1
+        jdbcTemplate.update("""
+                INSERT INTO likes (user_id, film_id) VALUES (1, 1), (1, 3), (2, 2), (2, 3), (3, 1), (3, 4)
+                """);
+        likesMatrix.rebuild();
+        similarityIndex.recompute();
+
+        Map<Integer, Double> scores = similarityIndex.scoreCandidates(new int[]{1, 2});
+
+        assertThat(scores).containsOnlyKeys(3, 4);
+        assertThat(scores.get(3)).isCloseTo(1 / Math.sqrt(2 * 2) + 1 / Math.sqrt(2), within(1e-6));
+        assertThat(scores.get(4)).isCloseTo(1 / Math.sqrt(2), within(1e-6));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void recomputeLatency() {
+        // Полный набор: mvn test -Dtest=FilmSimilarityIndexTest -Dlikes.benchmark.users=100000
+        int users = Integer.getInteger("likes.benchmark.users", 20_000);
+        SyntheticLikes.generate(jdbcTemplate, users, users / 10, 10);
+        likesMatrix.rebuild();
+        similarityIndex.recompute();
+
+        long[] samples = new long[5];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            similarityIndex.recompute();
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+
+        int[] liked = likesMatrix.likedFilms(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            similarityIndex.scoreCandidates(liked);
+        }
+        long mergeMicros = (System.nanoTime() - start) / 1_000 / 1_000;
+
+        log.info("Пользователей: {}, пересчёт модели похожих фильмов: {} мс, слияние списков для пользователя: {} мкс",
+                users, samples[samples.length / 2], mergeMicros);
+    }
+
+    private static Map<Integer, Double> cosine(Map<Integer, Set<Integer>> usersByFilm, int filmId) {
+        Set<Integer> own = usersByFilm.getOrDefault(filmId, Set.of());
+        Map<Integer, Double> result = new HashMap<>();
+        usersByFilm.forEach((other, users) -> {
+            if (other == filmId) {
+                return;
+            }
+            long common = users.stream().filter(own::contains).count();
+            if (common > 0) {
+                result.put(other, common / Math.sqrt((double) own.size() * users.size()));
+            }
+        });
+        return result;
+    }
+}
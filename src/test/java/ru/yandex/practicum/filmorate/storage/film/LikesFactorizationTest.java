@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({LikesMatrix.class})
+class LikesFactorizationTest {
+
+    private final LikesMatrix likesMatrix;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void trainedModelShouldRankLikedFilmsAboveOthers() {
+        SyntheticLikes.generate(jdbcTemplate, 2000, 200, 8);
+        likesMatrix.rebuild();
+        FactorModel model = LikesFactorization.train(likesMatrix.snapshot(), 16, 5);
+
+        // Доля пар (лайкнутый, не лайкнутый), в которых лайкнутый фильм получил больший прогноз
+        Random random = new Random(3);
+        int wins = 0;
+        int pairs = 0;
+        for (int userId = 1; userId <= 2000; userId += 10) {
+            int[] liked = likesMatrix.likedFilms(userId);
+            for (int filmId : liked) {
+                int other = 1 + random.nextInt(200);
+                if (Arrays.binarySearch(liked, other) >= 0) {
+                    continue;
+                }
+                pairs++;
+                if (score(model, userId, filmId) > score(model, userId, other)) {
+                    wins++;
+                }
+            }
+        }
+        assertThat((double) wins / pairs).isGreaterThan(0.8);
+    }
+
+    @Test
+    void mappedModelShouldScoreLikeTrainedOne(@TempDir Path directory) throws Exception {
+        SyntheticLikes.generate(jdbcTemplate, 500, 100, 6);
+        likesMatrix.rebuild();
+        FactorModel trained = LikesFactorization.train(likesMatrix.snapshot(), 8, 3);
+
+        Path file = directory.resolve("model.bin");
+        trained.write(file);
+        trained.write(file);
+        FactorModel mapped = FactorModel.map(file);
+
+        for (int userId = 1; userId <= 500; userId += 7) {
+            int[] liked = likesMatrix.likedFilms(userId);
+            Map<Integer, Double> top = mapped.topFilms(userId, liked, 10);
+            assertThat(top).isEqualTo(trained.topFilms(userId, liked, 10));
+            assertThat(top.keySet()).hasSizeLessThanOrEqualTo(10)
+                    .noneMatch(filmId -> Arrays.binarySearch(liked, filmId) >= 0);
+            assertThat(List.copyOf(top.values())).isSortedAccordingTo(Comparator.reverseOrder());
+        }
+    }
+
+    @Test
+    void loadShouldRetrainWhenModelFileWasTrainedOnOtherLikes(@TempDir Path directory) throws Exception {
+        SyntheticLikes.generate(jdbcTemplate, 300, 60, 5);
+        likesMatrix.rebuild();
+        Path file = directory.resolve("model.bin");
+        LikesFactorization first = new LikesFactorization(likesMatrix, file);
+        first.retrain();
+        first.shutdown();
+
+        LikesFactorization fresh = new LikesFactorization(likesMatrix, file);
+        fresh.load();
+        assertThat(fresh.version()).isEqualTo(1);
+        fresh.shutdown();
+
+        int filmId = 1;
+        while (Arrays.binarySearch(likesMatrix.likedFilms(1), filmId) >= 0) {
+            filmId++;
+        }
+        likesMatrix.addLike(1, filmId);
+        LikesFactorization stale = new LikesFactorization(likesMatrix, file);
+        stale.load();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (stale.lastTrainingMillis() < 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        stale.shutdown();
+
+        assertThat(stale.lastTrainingMillis()).isNotNegative();
+        assertThat(FactorModel.map(file).fingerprint())
+                .isEqualTo(LikesFactorization.fingerprint(likesMatrix.snapshot()));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void trainingAndScoringLatency() {
+        // mvn test -Pbenchmark -Dtest=LikesFactorizationTest -Dlikes.benchmark.users=100000
+        int users = Integer.getInteger("likes.benchmark.users", 20_000);
+        SyntheticLikes.generate(jdbcTemplate, users, users / 10, 10);
+        likesMatrix.rebuild();
+
+        long start = System.nanoTime();
+        FactorModel model = LikesFactorization.train(likesMatrix.snapshot(),
+                LikesFactorization.FACTORS, LikesFactorization.ITERATIONS);
+        long trainMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long[] samples = new long[200];
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < samples.length; i++) {
+                int userId = 1 + i * (users / samples.length);
+                int[] liked = likesMatrix.likedFilms(userId);
+                long scoreStart = System.nanoTime();
+                model.topFilms(userId, liked, 50);
+                samples[i] = (System.nanoTime() - scoreStart) / 1_000;
+            }
+        }
+        Arrays.sort(samples);
+        log.info("Пользователей: {}, фильмов: {}, обучение ALS: {} мс, подбор топ-50: {} мкс (медиана)",
+                users, users / 10, trainMillis, samples[samples.length / 2]);
+        assertThat(model.topFilms(1, likesMatrix.likedFilms(1), 50)).isNotEmpty();
+    }
+
+    private static double score(FactorModel model, int userId, int filmId) {
+        double score = 0;
+        for (int i = 0; i < model.factors(); i++) {
+            score += model.userFactor(userId, i) * model.filmFactor(filmId, i);
+        }
+        return score;
+    }
+}
@@ -0,0 +1,238 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({LikesMatrix.class})
+class LikesMatrixTest {
+
+    // Прежний поиск одного похожего пользователя в UserDbStorage — эталон для сравнения
+    private static final String LEGACY_SIMILAR_USER_SQL = """
+            SELECT l2.user_id
+            FROM likes l1
+            JOIN likes l2 ON l1.film_id = l2.film_id
+            WHERE l1.user_id = ?
+              AND l2.user_id != ?
+            GROUP BY l2.user_id
+            ORDER BY COUNT(*) DESC
+            LIMIT 1
+            """;
+
+    private static final String COMMON_FILMS_SQL = """
+            SELECT film_id FROM likes WHERE user_id = ?
+            INTERSECT
+            SELECT film_id FROM likes WHERE user_id = ?
+            ORDER BY film_id
+            """;
+
+    private static final String FILMS_NOT_LIKED_SQL = """
+            SELECT film_id FROM likes WHERE user_id = ?
+            EXCEPT
+            SELECT film_id FROM likes WHERE user_id = ?
+            ORDER BY film_id
+            """;
+
+    private final LikesMatrix likesMatrix;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void neighboursShouldMatchSqlOverlap() {
+        SyntheticLikes.generate(jdbcTemplate, 500, 200, 8);
+        likesMatrix.rebuild();
+
+        for (int userId = 1; userId <= 50; userId++) {
+            Map<Integer, Integer> expected = new HashMap<>();
+            jdbcTemplate.query("""
+                    SELECT l2.user_id, COUNT(*) AS common
+                    FROM likes l1
+                    JOIN likes l2 ON l1.film_id = l2.film_id
+                    WHERE l1.user_id = ? AND l2.user_id != ?
+                    GROUP BY l2.user_id
+                    """, rs -> {
+                expected.put(rs.getInt("user_id"), rs.getInt("common"));
+            }, userId, userId);
+
+            List<LikesMatrix.Neighbour> neighbours =
+                    likesMatrix.findNeighbours(userId, Integer.MAX_VALUE, LikesMatrix.Similarity.OVERLAP);
+
+            Map<Integer, Integer> actual = new HashMap<>();
+            neighbours.forEach(neighbour -> actual.put(neighbour.userId(), neighbour.overlap()));
+            assertThat(actual).isEqualTo(expected);
+            assertThat(neighbours).isSortedAccordingTo(
+                    Comparator.comparingDouble(LikesMatrix.Neighbour::similarity).reversed());
+        }
+    }
+
+    @Test
+    void rowOperationsShouldMatchSetQueries() {
+        SyntheticLikes.generate(jdbcTemplate, 2_000, 200, 10);
+        likesMatrix.rebuild();
+
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            int userId = 1 + random.nextInt(2_000);
+            int otherId = 1 + random.nextInt(2_000);
+            assertThat(likesMatrix.commonFilms(userId, otherId))
+                    .as("общие фильмы %d и %d", userId, otherId)
+                    .isEqualTo(query(COMMON_FILMS_SQL, userId, otherId));
+            assertThat(likesMatrix.filmsNotLikedBy(otherId, userId))
+                    .as("фильмы %d без фильмов %d", otherId, userId)
+                    .isEqualTo(query(FILMS_NOT_LIKED_SQL, otherId, userId));
+        }
+        assertThat(likesMatrix.commonFilms(1, 1_000_000)).isEmpty();
+        assertThat(likesMatrix.filmsNotLikedBy(1, 1_000_000)).isEqualTo(likesMatrix.likedFilms(1));
+    }
+
+    @Test
+    void similarityMetricsShouldNormalizeBySetSizes() {
+        SyntheticLikes.generate(jdbcTemplate, 0, 10, 0);
+        int target = createUser(1);
+        int collector = createUser(2);
+        int twin = createUser(3);
+        like(target, 1, 2);
+        like(collector, 1, 2, 3, 4, 5, 6, 7, 8);
+        like(twin, 1);
+        likesMatrix.rebuild();
+
+        assertThat(likesMatrix.findNeighbours(target, 1, LikesMatrix.Similarity.OVERLAP))
+                .extracting(LikesMatrix.Neighbour::userId).containsExactly(collector);
+        // Jaccard: 2/8 против 1/2, косинус: 2/4 против 1/√2
+        assertThat(likesMatrix.findNeighbours(target, 1, LikesMatrix.Similarity.JACCARD))
+                .extracting(LikesMatrix.Neighbour::userId).containsExactly(twin);
+        assertThat(likesMatrix.findNeighbours(target, 1, LikesMatrix.Similarity.COSINE))
+                .extracting(LikesMatrix.Neighbour::userId).containsExactly(twin);
+    }
+
+    @Test
+    void incrementalUpdatesShouldMatchRebuild() {
+        SyntheticLikes.generate(jdbcTemplate, 300, 100, 5);
+        likesMatrix.rebuild();
+
+        // Больше изменённых строк, чем порог слияния слоёв
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            int userId = 1 + random.nextInt(300);
+            int filmId = 1 + random.nextInt(100);
+            if (random.nextBoolean()) {
+                jdbcTemplate.update("MERGE INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+                likesMatrix.addLike(userId, filmId);
+            } else {
+                jdbcTemplate.update("DELETE FROM likes WHERE film_id = ? AND user_id = ?", filmId, userId);
+                likesMatrix.removeLike(userId, filmId);
+            }
+        }
+        jdbcTemplate.update("DELETE FROM films WHERE id = 1");
+        likesMatrix.removeFilm(1);
+        jdbcTemplate.update("DELETE FROM users WHERE id = 2");
+        likesMatrix.removeUser(2);
+
+        LikesMatrix rebuilt = new LikesMatrix(jdbcTemplate);
+        rebuilt.rebuild();
+        for (int userId = 1; userId <= 300; userId++) {
+            assertThat(likesMatrix.likedFilms(userId)).isEqualTo(rebuilt.likedFilms(userId));
+            assertThat(likesMatrix.findNeighbours(userId, 5, LikesMatrix.Similarity.JACCARD))
+                    .isEqualTo(rebuilt.findNeighbours(userId, 5, LikesMatrix.Similarity.JACCARD));
+            assertThat(likesMatrix.commonFilms(userId, 5)).isEqualTo(rebuilt.commonFilms(userId, 5));
+            assertThat(likesMatrix.filmsNotLikedBy(userId, 3)).isEqualTo(rebuilt.filmsNotLikedBy(userId, 3));
+        }
+        for (int filmId = 1; filmId <= 100; filmId++) {
+            assertThat(likesMatrix.likeCount(filmId)).isEqualTo(rebuilt.likeCount(filmId));
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void neighboursLatencyAgainstSql() {
+        // Полный набор (100 000 пользователей, ~1 млн лайков) генерируется около минуты:
+        // mvn test -Dtest=LikesMatrixTest -Dlikes.benchmark.users=100000
+        int users = Integer.getInteger("likes.benchmark.users", 20_000);
+        int films = users / 10;
+        SyntheticLikes.generate(jdbcTemplate, users, films, 10);
+        Integer likes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+
+        long buildStart = System.nanoTime();
+        likesMatrix.rebuild();
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        List<Integer> sample = new ArrayList<>();
+        for (int userId = 1; userId <= users; userId += users / 20) {
+            sample.add(userId);
+        }
+
+        long sql = median(sample, userId ->
+                jdbcTemplate.queryForList(LEGACY_SIMILAR_USER_SQL, Integer.class, userId, userId));
+        long matrixBest = median(sample, userId ->
+                likesMatrix.findNeighbours(userId, 1, LikesMatrix.Similarity.OVERLAP));
+        long matrix = median(sample, userId ->
+                likesMatrix.findNeighbours(userId, 10, LikesMatrix.Similarity.JACCARD));
+
+        for (Integer userId : sample) {
+            Integer expected = jdbcTemplate.queryForList(LEGACY_SIMILAR_USER_SQL, Integer.class, userId, userId)
+                    .stream().findFirst().orElse(null);
+            assertThat(expected).isNotNull();
+            int bestOverlap = likesMatrix.findNeighbours(userId, 1, LikesMatrix.Similarity.OVERLAP)
+                    .getFirst().overlap();
+            assertThat(overlap(userId, expected)).isEqualTo(bestOverlap);
+        }
+
+        log.info("Пользователей: {}, фильмов: {}, лайков: {}, сборка матрицы: {} мс", users, films, likes, buildMillis);
+        log.info("Поиск соседей: SQL (один сосед) {} мкс, матрица (один сосед) {} мкс, "
+                        + "матрица (топ-10, Jaccard) {} мкс",
+                sql, matrixBest, matrix);
+    }
+
+    private long median(List<Integer> userIds, IntConsumer call) {
+        userIds.forEach(call::accept);
+        long[] samples = new long[userIds.size()];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            call.accept(userIds.get(i));
+            samples[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private int overlap(int userId, int otherId) {
+        Integer common = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM likes l1 JOIN likes l2 ON l1.film_id = l2.film_id
+                WHERE l1.user_id = ? AND l2.user_id = ?
+                """, Integer.class, userId, otherId);
+        return common == null ? 0 : common;
+    }
+
+    private int createUser(int index) {
+        jdbcTemplate.update("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)",
+                index, "matrix" + index + "@mail.ru", "matrix" + index, "Matrix " + index, Date.valueOf("1990-01-01"));
+        return index;
+    }
+
+    private int[] query(String sql, int userId, int otherId) {
+        return jdbcTemplate.queryForList(sql, Integer.class, userId, otherId).stream()
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private void like(int userId, int... filmIds) {
+        for (int filmId : filmIds) {
+            jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestTrieTest {
+
+    @Test
+    void shouldReturnCompletionsOrderedByWeight() {
+        SuggestTrie trie = new SuggestTrie();
+        trie.put(Suggestion.Type.FILM, 1, "Интерстеллар", 5);
+        trie.put(Suggestion.Type.FILM, 2, "Индиана Джонс", 9);
+        trie.put(Suggestion.Type.FILM, 3, "Иван Васильевич", 1);
+        trie.put(Suggestion.Type.DIRECTOR, 1, "Иван Пырьев", 7);
+
+        assertThat(ids(trie.complete("ин", 10))).containsExactly(2, 1);
+        assertThat(trie.complete("и", 2))
+                .extracting(Suggestion::getName)
+                .containsExactly("Индиана Джонс", "Иван Пырьев");
+        assertThat(trie.complete("нет такого", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldMatchWordStartsWithoutDuplicates() {
+        SuggestTrie trie = new SuggestTrie();
+        trie.put(Suggestion.Type.FILM, 1, "Криминальное чтиво", 3);
+        trie.put(Suggestion.Type.FILM, 2, "Чтиво чтиво", 1);
+
+        assertThat(ids(trie.complete("чти", 10))).containsExactly(1, 2);
+        assertThat(trie.complete("иво", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldReflectWeightUpdatesAndRemovals() {
+        SuggestTrie trie = new SuggestTrie();
+        trie.put(Suggestion.Type.FILM, 1, "Матрица", 1);
+        trie.put(Suggestion.Type.FILM, 2, "Матрица: Перезагрузка", 2);
+
+        trie.updateWeight(Suggestion.Type.FILM, 1, 10);
+        assertThat(ids(trie.complete("мат", 10))).containsExactly(1, 2);
+
+        trie.remove(Suggestion.Type.FILM, 1);
+        assertThat(ids(trie.complete("мат", 10))).containsExactly(2);
+        assertThat(trie.complete("перезагрузка", 10)).hasSize(1);
+
+        trie.remove(Suggestion.Type.FILM, 2);
+        assertThat(trie.complete("м", 10)).isEmpty();
+    }
+
+    private static List<Integer> ids(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getId).toList();
+    }
+}
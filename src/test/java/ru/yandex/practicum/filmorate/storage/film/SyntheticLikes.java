@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Синтетический набор фильмов, пользователей и лайков для тестов рекомендательных моделей.
+ * Популярность перекошена: фильмы с малыми id лайкают чаще.
+ */
+final class SyntheticLikes {
+
+    private SyntheticLikes() {
+    }
+
+    static void generate(JdbcTemplate jdbcTemplate, int users, int films, int likesPerUser) {
+        jdbcTemplate.update("""
+                INSERT INTO films (id, name, description, release_date, duration, mpa_id)
+                SELECT X, 'Film ' || X, 'Description', DATE '2000-01-01', 100, 1
+                FROM SYSTEM_RANGE(1, ?)
+                """, films);
+        if (users == 0) {
+            return;
+        }
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, login, name, birthday)
+                SELECT X, 'user' || X || '@mail.ru', 'user' || X, 'User ' || X, DATE '1990-01-01'
+                FROM SYSTEM_RANGE(1, ?)
+                """, users);
+        jdbcTemplate.update("""
+                INSERT INTO likes (film_id, user_id)
+                SELECT DISTINCT 1 + CAST(FLOOR(POWER(MOD(u.X * 7919 + k.X * 104729 + u.X * k.X * 31, 100003)
+                                                     / 100003.0, 2) * ?) AS INT), u.X
+                FROM SYSTEM_RANGE(1, ?) u, SYSTEM_RANGE(1, ?) k
+                """, films, users, likesPerUser);
+    }
+}
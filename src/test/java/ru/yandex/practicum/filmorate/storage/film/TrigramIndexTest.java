@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class TrigramIndexTest {
+
+    @Test
+    void shouldFindSubstringsIncludingShortQueries() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1, "интерстеллар");
+        index.put(2, "начало");
+        index.put(3, "pulp fiction");
+
+        assertThat(index.containing("стел")).containsExactly(1);
+        assertThat(index.containing("p f")).containsExactly(3);
+        assertThat(index.containing("а")).containsExactlyInAnyOrder(1, 2);
+        assertThat(index.containing("нет такого")).isEmpty();
+
+        index.remove(1);
+        assertThat(index.containing("стел")).isEmpty();
+    }
+
+    @Test
+    void shouldTolerateTyposInFuzzyMode() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1, "интерстеллар");
+        index.put(2, "начало");
+
+        Map<Integer, Double> similar = index.similar("интерстелар", 0.5);
+
+        assertThat(similar).containsOnlyKeys(1);
+        assertThat(similar.get(1)).isGreaterThan(0.8);
+    }
+
+    @Test
+    void shouldReportFootprintFor100kTitles() {
+        TrigramIndex index = new TrigramIndex();
+        Random random = new Random(42);
+        String[] words = {"начало", "конец", "любовь", "война", "мир", "город", "ночь", "star", "wars", "lord",
+                "rings", "matrix", "last", "day", "dark", "knight", "тайна", "остров", "путь", "домой"};
+
+        for (int id = 1; id <= 100_000; id++) {
+            StringBuilder title = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                title.append(i == 0 ? "" : " ").append(words[random.nextInt(words.length)]);
+            }
+            title.append(' ').append(id);
+            index.put(id, title.toString());
+        }
+
+        long bytes = index.estimateFootprintBytes();
+        log.info("Триграммный индекс: 100000 названий, {} триграмм, ~{} МБ",
+                index.trigramCount(), bytes / (1024 * 1024));
+
+        assertThat(index.containing(" 4242")).contains(4242);
+        assertThat(bytes).isLessThan(64L * 1024 * 1024);
+    }
+}
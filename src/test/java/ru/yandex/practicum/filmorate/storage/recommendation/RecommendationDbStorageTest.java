@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(RecommendationDbStorage.class)
+class RecommendationDbStorageTest {
+
+    private final RecommendationStorage recommendationStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, login, name, birthday)
+                SELECT X, 'user' || X || '@mail.ru', 'user' || X, 'User ' || X, DATE '1990-01-01'
+                FROM SYSTEM_RANGE(1, 3)
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO films (id, name, description, release_date, duration, mpa_id)
+                SELECT X, 'Film ' || X, 'Description', DATE '2000-01-01', 100, 1
+                FROM SYSTEM_RANGE(1, 5)
+                """);
+    }
+
+    @Test
+    void saveAll_ShouldReplacePreviousRecommendationsInRankOrder() {
+        Instant now = Instant.now();
+        recommendationStorage.saveAll(Map.of(1, List.of(3, 1, 2), 2, List.of(4)), now.minusSeconds(60));
+        recommendationStorage.saveAll(Map.of(1, List.of(5, 4)), now);
+
+        assertThat(recommendationStorage.findFresh(1, now.minusSeconds(1))).contains(List.of(5, 4));
+        assertThat(recommendationStorage.findFresh(2, now.minusSeconds(120))).contains(List.of(4));
+        assertThat(recommendationStorage.findFresh(3, now.minusSeconds(120))).isEmpty();
+    }
+
+    @Test
+    void findFresh_WhenNothingToRecommend_ShouldReturnEmptyList() {
+        recommendationStorage.saveAll(Map.of(3, List.of()), Instant.now());
+
+        assertThat(recommendationStorage.findFresh(3, Instant.EPOCH)).contains(List.of());
+    }
+
+    @Test
+    void findFresh_WhenComputedBeforeThreshold_ShouldReturnEmpty() {
+        Instant computedAt = Instant.now().minus(Duration.ofHours(30));
+        recommendationStorage.saveAll(Map.of(1, List.of(2)), computedAt);
+
+        assertThat(recommendationStorage.findFresh(1, Instant.now().minus(Duration.ofHours(25)))).isEmpty();
+        assertThat(recommendationStorage.findFresh(1, computedAt)).contains(List.of(2));
+    }
+
+    @Test
+    void markLikesChanged_ShouldRemoveOnlyThatUser() {
+        Instant now = Instant.now();
+        recommendationStorage.saveAll(Map.of(1, List.of(2), 2, List.of(3)), now);
+
+        recommendationStorage.markLikesChanged(1);
+
+        assertThat(recommendationStorage.findFresh(1, now)).isEmpty();
+        assertThat(recommendationStorage.findFresh(2, now)).contains(List.of(3));
+    }
+
+    @Test
+    void saveAll_ShouldSkipUserWhoseLikesChangedDuringComputation() {
+        Instant jobStart = Instant.now().minusSeconds(60);
+        recommendationStorage.saveAll(Map.of(1, List.of(2)), jobStart.minus(Duration.ofDays(1)));
+        recommendationStorage.markLikesChanged(1);
+        recommendationStorage.markLikesChanged(3);
+
+        recommendationStorage.saveAll(Map.of(1, List.of(4), 2, List.of(3), 3, List.of(5)), jobStart);
+
+        assertThat(recommendationStorage.findFresh(1, Instant.EPOCH)).isEmpty();
+        assertThat(recommendationStorage.findFresh(2, jobStart)).contains(List.of(3));
+        assertThat(recommendationStorage.findFresh(3, Instant.EPOCH)).isEmpty();
+
+        recommendationStorage.saveAll(Map.of(1, List.of(4)), Instant.now());
+
+        assertThat(recommendationStorage.findFresh(1, jobStart)).contains(List.of(4));
+    }
+}